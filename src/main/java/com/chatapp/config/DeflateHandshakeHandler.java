@@ -0,0 +1,118 @@
+package com.chatapp.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import org.springframework.context.Lifecycle;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.server.HandshakeFailureException;
+import org.springframework.web.socket.server.HandshakeHandler;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Handshake for the native endpoint. The servlet container negotiates permessage-deflate from the
+// client's Sec-WebSocket-Extensions offer, so the offer is rewritten before the upgrade: the extension
+// is removed when compression is disabled, and server_no_context_takeover is requested when the
+// per-connection compression window should not be kept between frames.
+public class DeflateHandshakeHandler implements HandshakeHandler, Lifecycle {
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+    private static final String NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    private final DefaultHandshakeHandler delegate = new DefaultHandshakeHandler();
+    private final boolean deflateEnabled;
+    private final boolean noContextTakeover;
+
+    public DeflateHandshakeHandler(boolean deflateEnabled, boolean noContextTakeover) {
+        this.deflateEnabled = deflateEnabled;
+        this.noContextTakeover = noContextTakeover;
+    }
+
+    @Override
+    public boolean doHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Map<String, Object> attributes) throws HandshakeFailureException {
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            request = new ServletServerHttpRequest(new ExtensionOfferRequest(servletRequest.getServletRequest()));
+        }
+        return delegate.doHandshake(request, response, wsHandler, attributes);
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+    }
+
+    @Override
+    public void stop() {
+        delegate.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return delegate.isRunning();
+    }
+
+    private String rewriteOffer(String header) {
+        List<String> offers = new ArrayList<>();
+        for (WebSocketExtension extension : WebSocketExtension.parseExtensions(header)) {
+            if (!PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName())) {
+                offers.add(extension.toString());
+            } else if (deflateEnabled) {
+                Map<String, String> parameters = new LinkedHashMap<>(extension.getParameters());
+                if (noContextTakeover) {
+                    parameters.putIfAbsent(NO_CONTEXT_TAKEOVER, null);
+                }
+                offers.add(format(extension.getName(), parameters));
+            }
+        }
+        return offers.isEmpty() ? null : String.join(", ", offers);
+    }
+
+    // WebSocketExtension.toString() prints "name=null" for valueless parameters
+    private static String format(String name, Map<String, String> parameters) {
+        return name + parameters.entrySet().stream()
+                .map(p -> ";" + p.getKey() + (p.getValue() != null && !p.getValue().isEmpty() ? "=" + p.getValue() : ""))
+                .collect(Collectors.joining());
+    }
+
+    private class ExtensionOfferRequest extends HttpServletRequestWrapper {
+
+        ExtensionOfferRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (!WebSocketHttpHeaders.SEC_WEBSOCKET_EXTENSIONS.equalsIgnoreCase(name)) {
+                return super.getHeader(name);
+            }
+            List<String> values = Collections.list(getHeaders(name));
+            return values.isEmpty() ? null : String.join(", ", values);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (!WebSocketHttpHeaders.SEC_WEBSOCKET_EXTENSIONS.equalsIgnoreCase(name)) {
+                return super.getHeaders(name);
+            }
+            List<String> rewritten = new ArrayList<>();
+            for (String value : Collections.list(super.getHeaders(name))) {
+                String offer = rewriteOffer(value);
+                if (offer != null) {
+                    rewritten.add(offer);
+                }
+            }
+            return Collections.enumeration(rewritten);
+        }
+    }
+}
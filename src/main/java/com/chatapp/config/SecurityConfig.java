@@ -4,6 +4,7 @@ import com.chatapp.security.CustomUserDetailsService;
 import com.chatapp.security.JwtAuthenticationFilter;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -33,9 +34,13 @@ public class SecurityConfig {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    // Raising the strength is picked up on each user's next login (see AuthController.login)
+    @Value("${app.auth.bcrypt-strength:10}")
+    private int bcryptStrength;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
@@ -59,7 +64,8 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/", "/index.html", "/login.html", "/register.html", "/dashboard.html",
                                "/css/**", "/js/**", "/images/**", "/api/auth/**",
-                               "/ws/**", "/app/**", "/topic/**", "/user/**", "/oauth2/**").permitAll()
+                               "/ws/**", "/ws-native", "/app/**", "/topic/**", "/user/**", "/oauth2/**",
+                               "/api/media/**").permitAll()
                 .anyRequest().authenticated()
             )
             .exceptionHandling(ex -> ex
@@ -0,0 +1,86 @@
+package com.chatapp.config;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Virtual-thread mode for the STOMP channels: one virtual thread per task from a SimpleAsyncTaskExecutor,
+// with a concurrency limit instead of a pool and a queue; a send past the limit waits for a free slot.
+// Spring 6.1's ChannelRegistration only accepts a ThreadPoolTaskExecutor, hence the subclass; the
+// inherited pool is never given any work.
+public class VirtualThreadTaskExecutor extends ThreadPoolTaskExecutor {
+    private static final long serialVersionUID = 1L;
+
+    private final SimpleAsyncTaskExecutor delegate;
+    private final AtomicInteger active = new AtomicInteger();
+
+    public VirtualThreadTaskExecutor(String threadNamePrefix, int concurrencyLimit) {
+        delegate = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        delegate.setVirtualThreads(true);
+        delegate.setConcurrencyLimit(concurrencyLimit);
+    }
+
+    @Override
+    public void setTaskDecorator(TaskDecorator taskDecorator) {
+        super.setTaskDecorator(taskDecorator);
+        delegate.setTaskDecorator(taskDecorator);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        delegate.execute(tracked(task));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return delegate.submit(tracked(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return delegate.submit(() -> {
+            active.incrementAndGet();
+            try {
+                return task.call();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return active.get();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return 0;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.close();
+        super.shutdown();
+    }
+
+    private Runnable tracked(Runnable task) {
+        return () -> {
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        };
+    }
+}
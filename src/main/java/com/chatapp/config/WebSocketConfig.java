@@ -1,24 +1,145 @@
 package com.chatapp.config;
 
+import com.chatapp.security.GroupTopicGuard;
+import com.chatapp.security.StompAuthChannelInterceptor;
+import com.chatapp.security.StompRateLimitInterceptor;
+import com.chatapp.service.CborCodec;
+import com.chatapp.service.ChannelLoad;
+import com.chatapp.service.OutboundBatcher;
+import com.chatapp.service.SlowConsumerGuard;
+import com.chatapp.service.TransportMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@EnableConfigurationProperties(WebSocketProperties.class)
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private StompAuthChannelInterceptor stompAuthChannelInterceptor;
+
+    @Autowired
+    private StompRateLimitInterceptor stompRateLimitInterceptor;
+
+    @Autowired
+    private GroupTopicGuard groupTopicGuard;
+
+    @Autowired
+    private SlowConsumerGuard slowConsumerGuard;
+
+    @Autowired
+    private TransportMetrics transportMetrics;
+
+    @Autowired
+    private CborCodec cborCodec;
+
+    @Autowired
+    private OutboundBatcher outboundBatcher;
+
+    @Autowired
+    private WebSocketProperties properties;
+
+    @Autowired
+    private ChannelLoad channelLoad;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue", "/user");
+        if ("relay".equalsIgnoreCase(properties.getBrokerMode())) {
+            WebSocketProperties.Relay relayProperties = properties.getRelay();
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayProperties.getHost())
+                    .setRelayPort(relayProperties.getPort())
+                    .setClientLogin(relayProperties.getClientLogin())
+                    .setClientPasscode(relayProperties.getClientPasscode())
+                    .setSystemLogin(relayProperties.getSystemLogin())
+                    .setSystemPasscode(relayProperties.getSystemPasscode())
+                    // Share session registries so /user destinations resolve to sessions on other nodes
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!relayProperties.getVirtualHost().isEmpty()) {
+                relay.setVirtualHost(relayProperties.getVirtualHost());
+            }
+            System.out.println("INFO: STOMP broker relay enabled: " + relayProperties.getHost() + ":" + relayProperties.getPort());
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthChannelInterceptor, stompRateLimitInterceptor);
+        configureExecutor(registration, properties.getInbound(), "ws-inbound-");
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Revoked group deliveries are dropped first; batches are formed before the slow-consumer check
+        // and CBOR transcoding see them
+        registration.interceptors(groupTopicGuard, outboundBatcher, slowConsumerGuard, cborCodec);
+        configureExecutor(registration, properties.getOutbound(), "ws-outbound-");
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        WebSocketProperties.Transport transport = properties.getTransport();
+        registration.setSendTimeLimit(transport.getSendTimeLimitMs())
+                .setSendBufferSizeLimit(transport.getSendBufferSizeLimitBytes())
+                .setMessageSizeLimit(transport.getMessageSizeLimitBytes())
+                .setTimeToFirstMessage(transport.getTimeToFirstMessageMs())
+                .addDecoratorFactory(cborCodec)
+                .addDecoratorFactory(slowConsumerGuard)
+                .addDecoratorFactory(transportMetrics);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Selected by content-type: application/cbor; the default String/byte[]/JSON converters follow
+        messageConverters.add(cborCodec.messageConverter());
+        return true;
+    }
+
+    private void configureExecutor(ChannelRegistration registration, WebSocketProperties.Channel channel, String prefix) {
+        ThreadPoolTaskExecutor executor;
+        if (channel.isVirtualThreads()) {
+            executor = new VirtualThreadTaskExecutor(prefix + "vt-", channel.getVirtualThreadConcurrency());
+            executor.setThreadNamePrefix(prefix + "vt-");
+        } else {
+            executor = new ThreadPoolTaskExecutor();
+            executor.setThreadNamePrefix(prefix);
+        }
+        executor.setTaskDecorator(channelLoad.decorator(prefix.substring(0, prefix.length() - 1)));
+        registration.taskExecutor(executor)
+                .corePoolSize(channel.getCorePoolSize())
+                .maxPoolSize(channel.getMaxPoolSize())
+                .queueCapacity(channel.getQueueCapacity())
+                .keepAliveSeconds(channel.getKeepAliveSeconds());
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        WebSocketProperties.NativeEndpoint nativeEndpoint = properties.getNativeEndpoint();
+        if (nativeEndpoint.isEnabled()) {
+            registry.addEndpoint(nativeEndpoint.getPath())
+                    .setHandshakeHandler(new DeflateHandshakeHandler(
+                            nativeEndpoint.isPermessageDeflate(), nativeEndpoint.isNoContextTakeover()))
+                    .setAllowedOrigins("http://localhost:8080");
+        }
+        // SockJS stays as the fallback for clients that cannot hold a raw WebSocket open
         registry.addEndpoint("/ws")
                 .setAllowedOrigins("http://localhost:8080")
                 .withSockJS();
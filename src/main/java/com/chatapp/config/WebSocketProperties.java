@@ -0,0 +1,112 @@
+package com.chatapp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Typed view of app.websocket.*: broker mode, STOMP channel executors, transport limits and the
+// slow-consumer policy applied to sessions whose outbound buffer backs up.
+@Data
+@ConfigurationProperties(prefix = "app.websocket")
+public class WebSocketProperties {
+
+    // "simple" keeps the in-process broker (single node); "relay" forwards to an external STOMP broker
+    // so that subscribers on every node see messages sent from any node
+    private String brokerMode = "simple";
+
+    private Relay relay = new Relay();
+
+    private NativeEndpoint nativeEndpoint = new NativeEndpoint();
+
+    private Channel inbound = new Channel();
+
+    private Channel outbound = new Channel();
+
+    private Transport transport = new Transport();
+
+    private SlowConsumer slowConsumer = new SlowConsumer();
+
+    private Batching batching = new Batching();
+
+    private RateLimit rateLimit = new RateLimit();
+
+    @Data
+    public static class Relay {
+        private String host = "localhost";
+        private int port = 61613;
+        private String virtualHost = "";
+        private String clientLogin = "guest";
+        private String clientPasscode = "guest";
+        private String systemLogin = "guest";
+        private String systemPasscode = "guest";
+    }
+
+    // Raw WebSocket STOMP endpoint served next to the SockJS one
+    @Data
+    public static class NativeEndpoint {
+        private boolean enabled = true;
+        private String path = "/ws-native";
+        private boolean permessageDeflate = true;
+        // Drop the compression window after each frame: less memory per connection, lower ratio
+        private boolean noContextTakeover = false;
+    }
+
+    @Data
+    public static class Channel {
+        private int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        private int maxPoolSize = Integer.MAX_VALUE;
+        private int queueCapacity = Integer.MAX_VALUE;
+        private int keepAliveSeconds = 60;
+        // Run each handler on its own virtual thread instead of the pool; the pool settings are then unused
+        private boolean virtualThreads = false;
+        // Handlers running at once in virtual-thread mode; a send beyond this waits for one to finish
+        private int virtualThreadConcurrency = 1000;
+    }
+
+    @Data
+    public static class Transport {
+        // A blocked send longer than this, or a buffer above the size limit, terminates the session
+        private int sendTimeLimitMs = 10_000;
+        private int sendBufferSizeLimitBytes = 512 * 1024;
+        private int messageSizeLimitBytes = 64 * 1024;
+        private int timeToFirstMessageMs = 60_000;
+    }
+
+    @Data
+    public static class SlowConsumer {
+        // "drop-non-critical" sheds typing/presence frames; "disconnect" closes the session
+        private String policy = "drop-non-critical";
+        // Frames handed to a session but not yet written to its socket
+        private int maxPendingMessages = 200;
+    }
+
+    // Sessions that subscribe to /user/queue/batch get chat messages coalesced into one frame per window
+    @Data
+    public static class Batching {
+        private boolean enabled = false;
+        private int windowMs = 10;
+        private int maxMessages = 50;
+        private int maxBytes = 64 * 1024;
+    }
+
+    // Token buckets per (session, destination) and (user, destination) for inbound SEND frames
+    @Data
+    public static class RateLimit {
+        private boolean enabled = true;
+        // Idle buckets are dropped after this long
+        private int idleExpirySeconds = 300;
+        // Keyed by application destination, e.g. destinations[/app/chat.sendMessage]
+        private Map<String, Limit> destinations = new HashMap<>();
+    }
+
+    // A rate of 0 disables that bucket
+    @Data
+    public static class Limit {
+        private double sessionPerSecond;
+        private int sessionBurst = 1;
+        private double userPerSecond;
+        private int userBurst = 1;
+    }
+}
@@ -2,11 +2,12 @@ package com.chatapp.controller;
 
 import com.chatapp.entity.User;
 import com.chatapp.service.EmailService;
+import com.chatapp.service.PasswordHashingService;
 import com.chatapp.service.UserService;
 import com.chatapp.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -23,7 +24,7 @@ public class AuthController {
     private UserService userService;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
     private JwtUtil jwtUtil;
@@ -43,7 +44,8 @@ public class AuthController {
             if (profilePicture != null && !profilePicture.isEmpty()) {
                 userService.updateProfilePicture(user.getId(), profilePicture);
             }
-            userService.setOnlineStatus(user.getId(), true);
+            // Persisted by PresenceService once the WebSocket session connects
+            user.setOnline(true);
 
             // Send registration success email (non-blocking best-effort)
             try {
@@ -54,11 +56,13 @@ public class AuthController {
                 // Don't fail registration if email fails
             }
 
-            String token = jwtUtil.generateToken(user.getUsername());
+            String token = jwtUtil.generateToken(user.getUsername(), user.getId());
             Map<String, Object> response = new HashMap<>();
             response.put("token", token);
             response.put("user", userService.convertToDTO(user));
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingService.HashingSaturatedException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -69,11 +73,16 @@ public class AuthController {
                                   @RequestParam String password) {
         try {
             Optional<User> userOpt = userService.findByUsername(username);
-            if (userOpt.isEmpty() || !passwordEncoder.matches(password, userOpt.get().getPassword())) {
+            if (userOpt.isEmpty() || !passwordHashingService.matches(password, userOpt.get().getPassword())) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid credentials"));
             }
             User user = userOpt.get();
-            userService.setOnlineStatus(user.getId(), true);
+            if (passwordHashingService.needsRehash(user.getPassword())) {
+                // Transparently move the stored hash to the current bcrypt cost
+                userService.updatePasswordHash(user.getId(), passwordHashingService.encode(password));
+            }
+            // Persisted by PresenceService once the WebSocket session connects
+            user.setOnline(true);
 
             // Send login success email (non-blocking best-effort)
             try {
@@ -84,16 +93,24 @@ public class AuthController {
                 // Don't fail login if email fails
             }
 
-            String token = jwtUtil.generateToken(user.getUsername());
+            String token = jwtUtil.generateToken(user.getUsername(), user.getId());
             Map<String, Object> response = new HashMap<>();
             response.put("token", token);
             response.put("user", userService.convertToDTO(user));
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingService.HashingSaturatedException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    private ResponseEntity<?> tooManyRequests(Exception e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", "1")
+                .body(Map.of("error", e.getMessage()));
+    }
+
     @GetMapping("/validate")
     public ResponseEntity<?> validateToken(@RequestHeader("Authorization") String token) {
         try {
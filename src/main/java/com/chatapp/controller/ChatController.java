@@ -1,9 +1,9 @@
 package com.chatapp.controller;
 
 import com.chatapp.dto.MessageDTO;
+import com.chatapp.dto.MessagePageDTO;
+import com.chatapp.security.CurrentUserId;
 import com.chatapp.service.ChatService;
-import com.chatapp.service.UserService;
-import com.chatapp.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,37 +19,35 @@ public class ChatController {
     @Autowired
     private ChatService chatService;
 
-    @Autowired
-    private UserService userService;
-
-    @Autowired
-    private JwtUtil jwtUtil;
-
-    private Long getUserIdFromToken(String token) {
-        if (token != null && token.startsWith("Bearer ")) {
-            token = token.substring(7);
-            String username = jwtUtil.extractUsername(token);
-            return userService.findByUsername(username)
-                    .map(u -> u.getId())
-                    .orElse(null);
-        }
-        return null;
-    }
-
     @GetMapping("/conversation/{userId2}")
-    public ResponseEntity<List<MessageDTO>> getConversation(@RequestHeader("Authorization") String token,
+    public ResponseEntity<List<MessageDTO>> getConversation(@CurrentUserId Long userId1,
                                                            @PathVariable Long userId2) {
-        Long userId1 = getUserIdFromToken(token);
         if (userId1 == null) {
             return ResponseEntity.badRequest().build();
         }
         return ResponseEntity.ok(chatService.getConversation(userId1, userId2));
     }
 
+    @GetMapping("/conversation/{userId2}/page")
+    public ResponseEntity<?> getConversationPage(@CurrentUserId Long userId1,
+                                                 @PathVariable Long userId2,
+                                                 @RequestParam(required = false) String before,
+                                                 @RequestParam(required = false) String after,
+                                                 @RequestParam(defaultValue = "50") int limit) {
+        if (userId1 == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
+        }
+        try {
+            MessagePageDTO page = chatService.getConversationPage(userId1, userId2, before, after, limit);
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/read/{userId2}")
-    public ResponseEntity<?> markConversationAsRead(@RequestHeader("Authorization") String token,
+    public ResponseEntity<?> markConversationAsRead(@CurrentUserId Long userId1,
                                                    @PathVariable Long userId2) {
-        Long userId1 = getUserIdFromToken(token);
         if (userId1 == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
         }
@@ -1,9 +1,8 @@
 package com.chatapp.controller;
 
 import com.chatapp.dto.FriendRequestDTO;
+import com.chatapp.security.CurrentUserId;
 import com.chatapp.service.FriendService;
-import com.chatapp.service.UserService;
-import com.chatapp.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,27 +18,9 @@ public class FriendController {
     @Autowired
     private FriendService friendService;
 
-    @Autowired
-    private UserService userService;
-
-    @Autowired
-    private JwtUtil jwtUtil;
-
-    private Long getUserIdFromToken(String token) {
-        if (token != null && token.startsWith("Bearer ")) {
-            token = token.substring(7);
-            String username = jwtUtil.extractUsername(token);
-            return userService.findByUsername(username)
-                    .map(u -> u.getId())
-                    .orElse(null);
-        }
-        return null;
-    }
-
     @PostMapping("/request")
-    public ResponseEntity<?> sendFriendRequest(@RequestHeader("Authorization") String token,
+    public ResponseEntity<?> sendFriendRequest(@CurrentUserId Long senderId,
                                               @RequestParam Long receiverId) {
-        Long senderId = getUserIdFromToken(token);
         if (senderId == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
         }
@@ -74,8 +55,7 @@ public class FriendController {
     }
 
     @GetMapping("/pending")
-    public ResponseEntity<List<FriendRequestDTO>> getPendingRequests(@RequestHeader("Authorization") String token) {
-        Long userId = getUserIdFromToken(token);
+    public ResponseEntity<List<FriendRequestDTO>> getPendingRequests(@CurrentUserId Long userId) {
         if (userId == null) {
             return ResponseEntity.badRequest().build();
         }
@@ -83,8 +63,7 @@ public class FriendController {
     }
 
     @GetMapping("/sent")
-    public ResponseEntity<List<FriendRequestDTO>> getSentRequests(@RequestHeader("Authorization") String token) {
-        Long userId = getUserIdFromToken(token);
+    public ResponseEntity<List<FriendRequestDTO>> getSentRequests(@CurrentUserId Long userId) {
         if (userId == null) {
             return ResponseEntity.badRequest().build();
         }
@@ -92,8 +71,7 @@ public class FriendController {
     }
 
     @GetMapping("/accepted")
-    public ResponseEntity<List<FriendRequestDTO>> getAcceptedFriends(@RequestHeader("Authorization") String token) {
-        Long userId = getUserIdFromToken(token);
+    public ResponseEntity<List<FriendRequestDTO>> getAcceptedFriends(@CurrentUserId Long userId) {
         if (userId == null) {
             return ResponseEntity.badRequest().build();
         }
@@ -101,9 +79,8 @@ public class FriendController {
     }
 
     @GetMapping("/check/{userId2}")
-    public ResponseEntity<?> areFriends(@RequestHeader("Authorization") String token,
+    public ResponseEntity<?> areFriends(@CurrentUserId Long userId1,
                                        @PathVariable Long userId2) {
-        Long userId1 = getUserIdFromToken(token);
         if (userId1 == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
         }
@@ -112,9 +89,8 @@ public class FriendController {
     }
 
     @DeleteMapping("/remove/{friendId}")
-    public ResponseEntity<?> removeFriend(@RequestHeader("Authorization") String token,
+    public ResponseEntity<?> removeFriend(@CurrentUserId Long userId,
                                           @PathVariable Long friendId) {
-        Long userId = getUserIdFromToken(token);
         if (userId == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
         }
@@ -127,4 +103,3 @@ public class FriendController {
     }
 }
 
-
@@ -2,10 +2,11 @@ package com.chatapp.controller;
 
 import com.chatapp.dto.ChatGroupDTO;
 import com.chatapp.dto.GroupMessageDTO;
+import com.chatapp.security.CurrentUserId;
+import com.chatapp.service.GroupMembershipIndex;
 import com.chatapp.service.GroupService;
-import com.chatapp.service.UserService;
-import com.chatapp.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -22,28 +23,13 @@ public class GroupController {
     private GroupService groupService;
 
     @Autowired
-    private UserService userService;
-
-    @Autowired
-    private JwtUtil jwtUtil;
-
-    private Long getUserIdFromToken(String token) {
-        if (token != null && token.startsWith("Bearer ")) {
-            token = token.substring(7);
-            String username = jwtUtil.extractUsername(token);
-            return userService.findByUsername(username)
-                    .map(u -> u.getId())
-                    .orElse(null);
-        }
-        return null;
-    }
+    private GroupMembershipIndex membershipIndex;
 
     @PostMapping("/create")
-    public ResponseEntity<?> createGroup(@RequestHeader("Authorization") String token,
+    public ResponseEntity<?> createGroup(@CurrentUserId Long userId,
                                         @RequestParam String name,
                                         @RequestParam(required = false) String description,
                                         @RequestParam(required = false) MultipartFile image) {
-        Long userId = getUserIdFromToken(token);
         if (userId == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
         }
@@ -55,8 +41,7 @@ public class GroupController {
     }
 
     @GetMapping("/my-groups")
-    public ResponseEntity<List<ChatGroupDTO>> getMyGroups(@RequestHeader("Authorization") String token) {
-        Long userId = getUserIdFromToken(token);
+    public ResponseEntity<List<ChatGroupDTO>> getMyGroups(@CurrentUserId Long userId) {
         if (userId == null) {
             return ResponseEntity.badRequest().build();
         }
@@ -93,6 +78,24 @@ public class GroupController {
         return ResponseEntity.ok(groupService.getGroupMessages(groupId));
     }
 
+    @GetMapping("/{groupId}/messages/range")
+    public ResponseEntity<?> getGroupMessageRange(@CurrentUserId Long userId,
+                                                  @PathVariable Long groupId,
+                                                  @RequestParam Long fromSeq,
+                                                  @RequestParam Long toSeq) {
+        if (userId == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
+        }
+        if (!membershipIndex.isMember(groupId, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "User is not a member of this group"));
+        }
+        try {
+            return ResponseEntity.ok(groupService.getGroupMessagesBySequence(groupId, fromSeq, toSeq));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/{groupId}")
     public ResponseEntity<?> getGroupDetails(@RequestHeader("Authorization") String token,
                                              @PathVariable Long groupId) {
@@ -104,4 +107,3 @@ public class GroupController {
     }
 }
 
-
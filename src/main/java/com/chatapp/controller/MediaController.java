@@ -0,0 +1,58 @@
+package com.chatapp.controller;
+
+import com.chatapp.service.BlobStorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/media")
+@CrossOrigin(origins = "http://localhost:8080")
+public class MediaController {
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    // Only these are rendered inline; everything else is a download, so an uploaded HTML or SVG file
+    // can never run script on this origin
+    private static final Set<MediaType> INLINE_TYPES = Set.of(MediaType.IMAGE_PNG, MediaType.IMAGE_JPEG,
+            MediaType.IMAGE_GIF, MediaType.parseMediaType("image/webp"), MediaType.parseMediaType("image/bmp"));
+
+    // Range requests are handled by Spring for Resource bodies, so large files stream in chunks.
+    // The type comes from the referencing row via the URL (BlobStorageService.urlFor), not from the blob.
+    @GetMapping("/{key}")
+    public ResponseEntity<Resource> getMedia(@PathVariable String key,
+                                             @RequestParam(required = false) String type) {
+        Path path;
+        try {
+            path = blobStorageService.resolve(key);
+        } catch (Exception e) {
+            return ResponseEntity.notFound().build();
+        }
+        MediaType contentType;
+        try {
+            contentType = type == null ? MediaType.APPLICATION_OCTET_STREAM : MediaType.parseMediaType(type);
+        } catch (InvalidMediaTypeException e) {
+            contentType = MediaType.APPLICATION_OCTET_STREAM;
+        }
+        boolean inline = INLINE_TYPES.contains(new MediaType(contentType.getType(), contentType.getSubtype()));
+        // Content-addressed blobs never change, so clients may cache them indefinitely
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header("X-Content-Type-Options", "nosniff")
+                .header(HttpHeaders.CONTENT_DISPOSITION, inline ? "inline" : "attachment")
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .eTag("\"" + key + "\"")
+                .body(new FileSystemResource(path));
+    }
+}
@@ -0,0 +1,35 @@
+package com.chatapp.controller;
+
+import com.chatapp.security.CurrentUserId;
+import com.chatapp.service.MessageSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/search")
+@CrossOrigin(origins = "http://localhost:8080")
+public class SearchController {
+
+    @Autowired
+    private MessageSearchService searchService;
+
+    @GetMapping("/messages")
+    public ResponseEntity<?> searchMessages(@CurrentUserId Long userId,
+                                            @RequestParam("q") String query,
+                                            @RequestParam(required = false) Long withUser,
+                                            @RequestParam(required = false) Long groupId,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "20") int size) {
+        if (userId == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
+        }
+        try {
+            return ResponseEntity.ok(searchService.search(userId, query, withUser, groupId, page, size));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -2,14 +2,13 @@ package com.chatapp.controller;
 
 import com.chatapp.dto.UserDTO;
 import com.chatapp.entity.User;
+import com.chatapp.security.CurrentUserId;
 import com.chatapp.service.UserService;
-import com.chatapp.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -20,28 +19,26 @@ public class UserController {
     @Autowired
     private UserService userService;
 
-    @Autowired
-    private JwtUtil jwtUtil;
-
-    private Long getUserIdFromToken(String token) {
-        if (token != null && token.startsWith("Bearer ")) {
-            token = token.substring(7);
-            String username = jwtUtil.extractUsername(token);
-            return userService.findByUsername(username)
-                    .map(u -> u.getId())
-                    .orElse(null);
+    @GetMapping("/directory")
+    public ResponseEntity<?> getDirectory(@RequestParam(required = false) String sort,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(userService.getDirectoryPage(sort, limit, cursor));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
-        return null;
-    }
-
-    @GetMapping("/all")
-    public ResponseEntity<List<UserDTO>> getAllUsers(@RequestHeader(value = "Authorization", required = false) String token) {
-        return ResponseEntity.ok(userService.getAllUsers());
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<UserDTO>> searchUsers(@RequestParam String query) {
-        return ResponseEntity.ok(userService.searchUsers(query));
+    public ResponseEntity<?> searchUsers(@RequestParam String query,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(userService.searchUsers(query, limit, cursor));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/{id}")
@@ -52,9 +49,8 @@ public class UserController {
     }
 
     @PutMapping("/profile")
-    public ResponseEntity<?> updateProfile(@RequestHeader("Authorization") String token,
+    public ResponseEntity<?> updateProfile(@CurrentUserId Long userId,
                                           @RequestBody Map<String, String> payload) {
-        Long userId = getUserIdFromToken(token);
         if (userId == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
         }
@@ -72,9 +68,8 @@ public class UserController {
     }
 
     @PostMapping("/profile/picture")
-    public ResponseEntity<?> updateProfilePicture(@RequestHeader("Authorization") String token,
+    public ResponseEntity<?> updateProfilePicture(@CurrentUserId Long userId,
                                                   @RequestParam MultipartFile file) {
-        Long userId = getUserIdFromToken(token);
         if (userId == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
         }
@@ -86,20 +81,8 @@ public class UserController {
         }
     }
 
-    @PostMapping("/online")
-    public ResponseEntity<?> setOnlineStatus(@RequestHeader("Authorization") String token,
-                                            @RequestParam boolean online) {
-        Long userId = getUserIdFromToken(token);
-        if (userId == null) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
-        }
-        userService.setOnlineStatus(userId, online);
-        return ResponseEntity.ok(Map.of("message", "Status updated"));
-    }
-
     @DeleteMapping("/account")
-    public ResponseEntity<?> deleteAccount(@RequestHeader("Authorization") String token) {
-        Long userId = getUserIdFromToken(token);
+    public ResponseEntity<?> deleteAccount(@CurrentUserId Long userId) {
         if (userId == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid token"));
         }
@@ -112,4 +95,3 @@ public class UserController {
     }
 }
 
-
@@ -1,22 +1,33 @@
 package com.chatapp.controller;
 
+import com.chatapp.dto.ChatMessagePayload;
+import com.chatapp.dto.GroupMessagePayload;
 import com.chatapp.dto.MessageDTO;
+import com.chatapp.dto.TypingPayload;
+import com.chatapp.entity.GroupMessage;
 import com.chatapp.entity.Message;
+import com.chatapp.security.CurrentUserIdArgumentResolver;
 import com.chatapp.service.ChatService;
+import com.chatapp.service.FriendService;
 import com.chatapp.service.GroupService;
+import com.chatapp.service.MessageBus;
+import com.chatapp.service.MessagePipeline;
+import com.chatapp.service.TypingTracker;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 
-import java.util.Map;
+import java.security.Principal;
+import java.util.List;
 
 @Controller
 public class WebSocketController {
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private MessageBus messageBus;
 
     @Autowired
     private ChatService chatService;
@@ -24,71 +35,95 @@ public class WebSocketController {
     @Autowired
     private GroupService groupService;
 
+    @Autowired
+    private MessagePipeline messagePipeline;
+
+    @Autowired
+    private FriendService friendService;
+
+    @Autowired
+    private TypingTracker typingTracker;
+
+    // "delta" publishes only the new message; "full" re-sends the whole history (legacy clients)
+    @Value("${app.group.delivery-mode:delta}")
+    private String groupDeliveryMode;
+
+    // The sender is always the principal bound at STOMP CONNECT, never a payload field
+    private Long currentUserId(Principal principal) {
+        Long userId = principal instanceof Authentication
+                ? CurrentUserIdArgumentResolver.currentUserId((Authentication) principal)
+                : null;
+        if (userId == null) {
+            throw new RuntimeException("Not authenticated");
+        }
+        return userId;
+    }
+
+    private static <T> T requireField(T value, String name) {
+        if (value == null) {
+            throw new RuntimeException("Missing " + name);
+        }
+        return value;
+    }
+
     @MessageMapping("/chat.sendMessage")
-    public void sendMessage(@Payload Map<String, Object> payload) {
+    public void sendMessage(@Payload ChatMessagePayload payload, Principal principal) {
         try {
-            Long senderId = Long.valueOf(payload.get("senderId").toString());
-            Long receiverId = Long.valueOf(payload.get("receiverId").toString());
-            String content = payload.get("content").toString();
-            String type = payload.getOrDefault("type", "TEXT").toString();
-
-            Message message = chatService.sendMessage(senderId, receiverId, content, 
-                Message.MessageType.valueOf(type));
-            MessageDTO messageDTO = chatService.convertToDTO(message);
-
-            // Send to receiver
-            messagingTemplate.convertAndSendToUser(
-                receiverId.toString(), 
-                "/queue/messages", 
-                messageDTO
-            );
-
-            // Send confirmation to sender
-            messagingTemplate.convertAndSendToUser(
-                senderId.toString(), 
-                "/queue/messages", 
-                messageDTO
-            );
+            Long senderId = currentUserId(principal);
+            Long receiverId = requireField(payload.getReceiverId(), "receiverId");
+            String content = requireField(payload.getContent(), "content");
+            String type = payload.getType() != null ? payload.getType() : "TEXT";
+
+            MessageDTO messageDTO;
+            if (messagePipeline.isEnabled()) {
+                // Delivered right away; the background writer persists it shortly after
+                messageDTO = messagePipeline.submit(senderId, receiverId, content, Message.MessageType.valueOf(type));
+            } else {
+                Message message = chatService.sendMessage(senderId, receiverId, content, 
+                    Message.MessageType.valueOf(type));
+                messageDTO = chatService.convertToDTO(message);
+            }
+
+            typingTracker.clear(senderId, receiverId);
+
+            // To the receiver, and as confirmation to the sender; serialized once for both
+            messageBus.sendToUsers(List.of(receiverId, senderId), "/queue/messages", messageDTO);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
     @MessageMapping("/chat.sendGroupMessage")
-    public void sendGroupMessage(@Payload Map<String, Object> payload) {
+    public void sendGroupMessage(@Payload GroupMessagePayload payload, Principal principal) {
         try {
-            Long groupId = Long.valueOf(payload.get("groupId").toString());
-            Long senderId = Long.valueOf(payload.get("senderId").toString());
-            String content = payload.get("content").toString();
-            String type = payload.getOrDefault("type", "TEXT").toString();
-
-            groupService.sendGroupMessage(groupId, senderId, content, 
-                com.chatapp.entity.GroupMessage.MessageType.valueOf(type));
-            
-            // Reload messages and broadcast to all group members
-            var messages = groupService.getGroupMessages(groupId);
-            messagingTemplate.convertAndSend("/topic/group/" + groupId, messages);
+            Long groupId = requireField(payload.getGroupId(), "groupId");
+            Long senderId = currentUserId(principal);
+            String content = requireField(payload.getContent(), "content");
+            String type = payload.getType() != null ? payload.getType() : "TEXT";
+
+            GroupMessage message = groupService.sendGroupMessage(groupId, senderId, content, 
+                GroupMessage.MessageType.valueOf(type));
+
+            if ("full".equalsIgnoreCase(groupDeliveryMode)) {
+                // Reload messages and broadcast to all group members
+                var messages = groupService.getGroupMessages(groupId);
+                messageBus.sendToGroup(groupId, messages);
+            } else {
+                messageBus.sendToGroup(groupId, groupService.convertToDTO(message));
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
     @MessageMapping("/chat.typing")
-    public void typing(@Payload Map<String, Object> payload) {
-        Long senderId = Long.valueOf(payload.get("senderId").toString());
-        Long receiverId = Long.valueOf(payload.get("receiverId").toString());
-        boolean isTyping = Boolean.parseBoolean(payload.get("isTyping").toString());
-
-        Map<String, Object> typingInfo = Map.of(
-            "senderId", senderId,
-            "isTyping", isTyping
-        );
-
-        messagingTemplate.convertAndSendToUser(
-            receiverId.toString(), 
-            "/queue/typing", 
-            typingInfo
-        );
+    public void typing(@Payload TypingPayload payload, Principal principal) {
+        Long senderId = currentUserId(principal);
+        Long receiverId = requireField(payload.getReceiverId(), "receiverId");
+        boolean isTyping = payload.isTyping();
+        if (!friendService.areFriends(senderId, receiverId)) {
+            return;
+        }
+        typingTracker.onTyping(senderId, receiverId, isTyping);
     }
 }
-
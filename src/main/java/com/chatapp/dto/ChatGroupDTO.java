@@ -15,7 +15,8 @@ public class ChatGroupDTO {
     private String description;
     private Long createdById;
     private String createdByName;
-    private String groupImageBase64;
+    private String groupImageUrl;
+    private Long groupImageSize;
     private String groupImageType;
     private LocalDateTime createdAt;
     private List<UserDTO> members;
@@ -0,0 +1,15 @@
+package com.chatapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Body of /app/chat.sendMessage; the sender comes from the STOMP principal
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessagePayload {
+    private Long receiverId;
+    private String content;
+    private String type = "TEXT";
+}
@@ -17,9 +17,11 @@ public class GroupMessageDTO {
     private String senderUsername;
     private String content;
     private String type;
-    private String mediaDataBase64;
+    private String mediaUrl;
+    private Long mediaSize;
     private String mediaType;
     private String fileName;
+    private Long sequence;
     private LocalDateTime timestamp;
 }
 
@@ -0,0 +1,15 @@
+package com.chatapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Body of /app/chat.sendGroupMessage; the sender comes from the STOMP principal
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupMessagePayload {
+    private Long groupId;
+    private String content;
+    private String type = "TEXT";
+}
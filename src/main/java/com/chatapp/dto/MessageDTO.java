@@ -1,5 +1,6 @@
 package com.chatapp.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,9 +18,11 @@ public class MessageDTO {
     private String receiverName;
     private String content;
     private String type;
-    private String mediaDataBase64;
+    private String mediaUrl;
+    private Long mediaSize;
     private String mediaType;
     private String fileName;
+    @JsonProperty("isRead")
     private boolean isRead;
     private LocalDateTime timestamp;
 }
@@ -0,0 +1,16 @@
+package com.chatapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageDTO {
+    private List<MessageDTO> messages;
+    private String oldestCursor;
+    private String newestCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,20 @@
+package com.chatapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHitDTO {
+    private String kind;
+    private Long messageId;
+    private Long groupId;
+    private Long senderId;
+    private Long receiverId;
+    private String content;
+    private LocalDateTime timestamp;
+    private float score;
+}
@@ -0,0 +1,17 @@
+package com.chatapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResultDTO {
+    private List<SearchHitDTO> hits;
+    private long totalHits;
+    private int page;
+    private int size;
+    private boolean hasMore;
+}
@@ -0,0 +1,16 @@
+package com.chatapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Body of /app/chat.typing
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingPayload {
+    private Long receiverId;
+    @JsonProperty("isTyping")
+    private boolean isTyping;
+}
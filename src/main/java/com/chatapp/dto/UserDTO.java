@@ -16,7 +16,8 @@ public class UserDTO {
     private boolean online;
     private String status;
     private String theme;
-    private String profilePictureBase64;
+    private String profilePictureUrl;
+    private Long profilePictureSize;
     private String profilePictureType;
 }
 
@@ -0,0 +1,27 @@
+package com.chatapp.dto;
+
+import com.chatapp.service.BlobStorageService;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class UserDirectoryEntryDTO {
+    private Long id;
+    private String username;
+    private String name;
+    private boolean online;
+    private String status;
+    private String profilePictureUrl;
+
+    // Target of the directory constructor-expression queries
+    public UserDirectoryEntryDTO(Long id, String username, String name, boolean online, String status,
+                                 String profilePictureKey, String profilePictureType) {
+        this.id = id;
+        this.username = username;
+        this.name = name;
+        this.online = online;
+        this.status = status;
+        this.profilePictureUrl = profilePictureKey == null ? null : BlobStorageService.urlFor(profilePictureKey, profilePictureType);
+    }
+}
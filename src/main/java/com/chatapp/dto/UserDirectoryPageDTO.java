@@ -0,0 +1,15 @@
+package com.chatapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserDirectoryPageDTO {
+    private List<UserDirectoryEntryDTO> users;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -21,12 +21,16 @@ public class ChatGroup {
 
     private String description;
 
-    @Lob
-    @Column(columnDefinition = "LONGBLOB")
-    private byte[] groupImage;
+    // SHA-256 key of the image in the blob store
+    private String groupImageKey;
+
+    private Long groupImageSize;
 
     private String groupImageType;
 
+    // Last sequence number handed out to a message in this group
+    private Long messageSequence = 0L;
+
     @ManyToOne
     @JoinColumn(name = "created_by", nullable = false)
     private User createdBy;
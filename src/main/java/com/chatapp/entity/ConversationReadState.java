@@ -0,0 +1,33 @@
+package com.chatapp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// Read watermark: every message from peer to reader with id <= lastReadMessageId has been read
+@Entity
+@Table(name = "conversation_read_states", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_read_state_reader_peer", columnNames = {"reader_id", "peer_id"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationReadState {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "reader_id", nullable = false)
+    private Long readerId;
+
+    @Column(name = "peer_id", nullable = false)
+    private Long peerId;
+
+    @Column(nullable = false)
+    private Long lastReadMessageId;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
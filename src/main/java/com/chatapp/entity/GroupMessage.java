@@ -7,7 +7,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "group_messages")
+@Table(name = "group_messages", indexes = {
+        @Index(name = "idx_group_messages_sequence", columnList = "group_id, sequence")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -31,14 +33,18 @@ public class GroupMessage {
     @Column(nullable = false)
     private MessageType type = MessageType.TEXT;
 
-    @Lob
-    @Column(columnDefinition = "LONGBLOB")
-    private byte[] mediaData;
+    // SHA-256 key of the payload in the blob store
+    private String mediaKey;
+
+    private Long mediaSize;
 
     private String mediaType;
 
     private String fileName;
 
+    // Per-group, gap-free ordering used by clients to detect missed deltas
+    private Long sequence;
+
     @Column(nullable = false)
     private LocalDateTime timestamp;
 
@@ -7,7 +7,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_conversation", columnList = "sender_id, receiver_id, timestamp, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -31,9 +33,10 @@ public class Message {
     @Column(nullable = false)
     private MessageType type = MessageType.TEXT;
 
-    @Lob
-    @Column(columnDefinition = "LONGBLOB")
-    private byte[] mediaData;
+    // SHA-256 key of the payload in the blob store
+    private String mediaKey;
+
+    private Long mediaSize;
 
     private String mediaType;
 
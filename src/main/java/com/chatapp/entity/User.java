@@ -7,7 +7,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_name", columnList = "name, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,9 +32,10 @@ public class User {
 
     private String phone;
 
-    @Lob
-    @Column(columnDefinition = "LONGBLOB")
-    private byte[] profilePicture;
+    // SHA-256 key of the picture in the blob store
+    private String profilePictureKey;
+
+    private Long profilePictureSize;
 
     private String profilePictureType;
 
@@ -53,10 +56,5 @@ public class User {
         createdAt = LocalDateTime.now();
         lastSeen = LocalDateTime.now();
     }
-
-    @PreUpdate
-    protected void onUpdate() {
-        lastSeen = LocalDateTime.now();
-    }
 }
 
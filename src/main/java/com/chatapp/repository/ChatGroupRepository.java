@@ -3,12 +3,22 @@ package com.chatapp.repository;
 import com.chatapp.entity.ChatGroup;
 import com.chatapp.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface ChatGroupRepository extends JpaRepository<ChatGroup, Long> {
     List<ChatGroup> findByCreatedBy(User createdBy);
+
+    // The UPDATE holds the group row lock until commit, so concurrent senders get distinct sequence numbers
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ChatGroup g SET g.messageSequence = COALESCE(g.messageSequence, 0) + 1 WHERE g.id = ?1")
+    int incrementMessageSequence(Long groupId);
+
+    @Query("SELECT g.messageSequence FROM ChatGroup g WHERE g.id = ?1")
+    Long findMessageSequence(Long groupId);
 }
 
 
@@ -0,0 +1,36 @@
+package com.chatapp.repository;
+
+import com.chatapp.entity.ConversationReadState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConversationReadStateRepository extends JpaRepository<ConversationReadState, Long> {
+    @Query("SELECT s.lastReadMessageId FROM ConversationReadState s WHERE s.readerId = ?1 AND s.peerId = ?2")
+    Long findWatermark(Long readerId, Long peerId);
+
+    // Single-statement upsert: advance the watermark to the highest id the peer sent to the reader.
+    // Reads compare ids against the watermark, so it is the max id, not the id of the newest timestamp.
+    @Modifying
+    @Query(value = "INSERT INTO conversation_read_states (reader_id, peer_id, last_read_message_id, updated_at) " +
+                   "SELECT ?1, ?2, MAX(m.id), NOW() FROM messages m WHERE m.sender_id = ?2 AND m.receiver_id = ?1 " +
+                   "HAVING MAX(m.id) IS NOT NULL " +
+                   "ON DUPLICATE KEY UPDATE last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id)), " +
+                   "updated_at = VALUES(updated_at)",
+           nativeQuery = true)
+    int markReadUpToLatest(Long readerId, Long peerId);
+
+    @Modifying
+    @Query(value = "INSERT INTO conversation_read_states (reader_id, peer_id, last_read_message_id, updated_at) " +
+                   "VALUES (?1, ?2, ?3, NOW()) " +
+                   "ON DUPLICATE KEY UPDATE last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id)), " +
+                   "updated_at = VALUES(updated_at)",
+           nativeQuery = true)
+    int markReadUpTo(Long readerId, Long peerId, Long messageId);
+
+    @Modifying
+    @Query("DELETE FROM ConversationReadState s WHERE s.readerId = ?1 OR s.peerId = ?1")
+    int deleteByUserId(Long userId);
+}
@@ -3,6 +3,7 @@ package com.chatapp.repository;
 import com.chatapp.entity.FriendRequest;
 import com.chatapp.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -15,6 +16,11 @@ public interface FriendRequestRepository extends JpaRepository<FriendRequest, Lo
     boolean existsBySenderAndReceiver(User sender, User receiver);
     List<FriendRequest> findBySender(User sender);
     List<FriendRequest> findByReceiver(User receiver);
+
+    @Query("SELECT fr FROM FriendRequest fr JOIN FETCH fr.sender JOIN FETCH fr.receiver " +
+           "WHERE fr.status = com.chatapp.entity.FriendRequest.FriendRequestStatus.ACCEPTED " +
+           "AND (fr.sender.id = ?1 OR fr.receiver.id = ?1)")
+    List<FriendRequest> findAcceptedByUserId(Long userId);
 }
 
 
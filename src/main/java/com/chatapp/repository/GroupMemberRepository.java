@@ -4,6 +4,7 @@ import com.chatapp.entity.ChatGroup;
 import com.chatapp.entity.GroupMember;
 import com.chatapp.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -14,6 +15,12 @@ public interface GroupMemberRepository extends JpaRepository<GroupMember, Long>
     List<GroupMember> findByGroup(ChatGroup group);
     Optional<GroupMember> findByGroupAndUser(ChatGroup group, User user);
     boolean existsByGroupAndUser(ChatGroup group, User user);
+
+    @Query("SELECT gm.user.id FROM GroupMember gm WHERE gm.group.id = ?1")
+    List<Long> findUserIdsByGroupId(Long groupId);
+
+    @Query("SELECT gm.group.id FROM GroupMember gm WHERE gm.user.id = ?1")
+    List<Long> findGroupIdsByUserId(Long userId);
 }
 
 
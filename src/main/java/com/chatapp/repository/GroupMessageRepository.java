@@ -3,7 +3,9 @@ package com.chatapp.repository;
 import com.chatapp.entity.ChatGroup;
 import com.chatapp.entity.GroupMessage;
 import com.chatapp.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
@@ -11,6 +13,10 @@ import java.util.List;
 public interface GroupMessageRepository extends JpaRepository<GroupMessage, Long> {
     List<GroupMessage> findByGroupOrderByTimestampAsc(ChatGroup group);
     List<GroupMessage> findBySender(User sender);
+
+    @Query("SELECT m FROM GroupMessage m JOIN FETCH m.sender " +
+           "WHERE m.group.id = ?1 AND m.sequence >= ?2 AND m.sequence <= ?3 ORDER BY m.sequence ASC")
+    List<GroupMessage> findByGroupAndSequenceRange(Long groupId, Long fromSequence, Long toSequence, Pageable pageable);
 }
 
 
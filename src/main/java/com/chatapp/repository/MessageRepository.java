@@ -2,15 +2,35 @@ package com.chatapp.repository;
 
 import com.chatapp.entity.Message;
 import com.chatapp.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     @Query("SELECT m FROM Message m WHERE (m.sender = ?1 AND m.receiver = ?2) OR (m.sender = ?2 AND m.receiver = ?1) ORDER BY m.timestamp ASC")
     List<Message> findConversation(User user1, User user2);
+
+    // Keyset queries for one direction of a conversation; each is a range scan on idx_messages_conversation
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.receiver " +
+           "WHERE m.sender.id = ?1 AND m.receiver.id = ?2 " +
+           "ORDER BY m.timestamp DESC, m.id DESC")
+    List<Message> findLatestDirected(Long senderId, Long receiverId, Pageable pageable);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.receiver " +
+           "WHERE m.sender.id = ?1 AND m.receiver.id = ?2 " +
+           "AND (m.timestamp < ?3 OR (m.timestamp = ?3 AND m.id < ?4)) " +
+           "ORDER BY m.timestamp DESC, m.id DESC")
+    List<Message> findDirectedBefore(Long senderId, Long receiverId, LocalDateTime timestamp, Long id, Pageable pageable);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.receiver " +
+           "WHERE m.sender.id = ?1 AND m.receiver.id = ?2 " +
+           "AND (m.timestamp > ?3 OR (m.timestamp = ?3 AND m.id > ?4)) " +
+           "ORDER BY m.timestamp ASC, m.id ASC")
+    List<Message> findDirectedAfter(Long senderId, Long receiverId, LocalDateTime timestamp, Long id, Pageable pageable);
     
     List<Message> findByReceiverAndIsReadFalse(User receiver);
     
@@ -18,5 +38,3 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     
     List<Message> findByReceiver(User receiver);
 }
-
-
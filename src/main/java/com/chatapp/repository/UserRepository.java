@@ -1,8 +1,14 @@
 package com.chatapp.repository;
 
+import com.chatapp.dto.UserDirectoryEntryDTO;
+import com.chatapp.dto.UserSummary;
 import com.chatapp.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,6 +17,35 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    @Query("SELECT new com.chatapp.dto.UserSummary(u.id, u.username, u.name) FROM User u WHERE u.id = ?1")
+    Optional<UserSummary> findSummaryById(Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.password = ?2 WHERE u.id = ?1")
+    int updatePassword(Long id, String encodedPassword);
+
+    @Query("SELECT new com.chatapp.dto.UserSummary(u.id, u.username, u.name) FROM User u WHERE u.username = ?1")
+    Optional<UserSummary> findSummaryByUsername(String username);
+
+    @Query("SELECT u FROM User u WHERE u.id > ?2 AND (LOWER(u.username) LIKE ?1 OR LOWER(u.name) LIKE ?1 " +
+           "OR LOWER(u.email) LIKE ?1) ORDER BY u.id")
+    List<User> searchAfterId(String pattern, Long afterId, Pageable pageable);
+
+    // Directory listings: projection only, keyset-paginated on (sort key, id)
+    @Query("SELECT new com.chatapp.dto.UserDirectoryEntryDTO(u.id, u.username, u.name, u.online, u.status, " +
+           "u.profilePictureKey, u.profilePictureType) FROM User u WHERE u.username > ?1 OR (u.username = ?1 AND u.id > ?2) " +
+           "ORDER BY u.username, u.id")
+    List<UserDirectoryEntryDTO> findDirectoryByUsername(String afterUsername, Long afterId, Pageable pageable);
+
+    @Query("SELECT new com.chatapp.dto.UserDirectoryEntryDTO(u.id, u.username, u.name, u.online, u.status, " +
+           "u.profilePictureKey, u.profilePictureType) FROM User u WHERE u.name > ?1 OR (u.name = ?1 AND u.id > ?2) " +
+           "ORDER BY u.name, u.id")
+    List<UserDirectoryEntryDTO> findDirectoryByName(String afterName, Long afterId, Pageable pageable);
+
+    @Query("SELECT new com.chatapp.dto.UserDirectoryEntryDTO(u.id, u.username, u.name, u.online, u.status, " +
+           "u.profilePictureKey, u.profilePictureType) FROM User u WHERE u.id < ?1 ORDER BY u.id DESC")
+    List<UserDirectoryEntryDTO> findDirectoryNewest(Long beforeId, Pageable pageable);
 }
 
 
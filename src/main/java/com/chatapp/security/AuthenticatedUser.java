@@ -0,0 +1,49 @@
+package com.chatapp.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+
+// Lightweight request principal: just the id, username and authorities, never the User entity
+public class AuthenticatedUser implements Principal {
+    public static final List<GrantedAuthority> USER_AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    private final Long id;
+    private final String username;
+    private final List<GrantedAuthority> authorities;
+
+    public AuthenticatedUser(Long id, String username) {
+        this(id, username, USER_AUTHORITIES);
+    }
+
+    public AuthenticatedUser(Long id, String username, List<GrantedAuthority> authorities) {
+        this.id = id;
+        this.username = username;
+        this.authorities = authorities;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    // User destinations (/user/queue/...) are keyed by id, matching convertAndSendToUser(userId.toString())
+    @Override
+    public String getName() {
+        return String.valueOf(id);
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+}
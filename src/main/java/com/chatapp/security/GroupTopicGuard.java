@@ -0,0 +1,79 @@
+package com.chatapp.security;
+
+import com.chatapp.service.GroupMembershipIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Group topic access is granted at SUBSCRIBE time, but the broker keeps delivering to that subscription
+// after the member is removed. On the outbound channel this re-checks membership for every group topic
+// frame against the (cluster-invalidated) membership index and drops frames for sessions whose user has
+// left the group.
+@Component
+public class GroupTopicGuard implements ChannelInterceptor {
+    static final String GROUP_TOPIC_PREFIX = "/topic/group/";
+
+    @Autowired
+    private GroupMembershipIndex membershipIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // sessionId -> userId, for sessions holding a group topic subscription
+    private final ConcurrentHashMap<String, Long> subscribers = new ConcurrentHashMap<>();
+    private Counter dropped;
+
+    @PostConstruct
+    public void init() {
+        dropped = Counter.builder("chat.ws.group_revoked_dropped").register(meterRegistry);
+    }
+
+    // Called by StompAuthChannelInterceptor once a group subscription is authorized
+    void onGroupSubscribed(String sessionId, Long userId) {
+        if (sessionId != null) {
+            subscribers.put(sessionId, userId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        subscribers.remove(event.getSessionId());
+    }
+
+    // Outbound channel
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || destination == null
+                || !destination.startsWith(GROUP_TOPIC_PREFIX)) {
+            return message;
+        }
+        Long userId = accessor.getSessionId() != null ? subscribers.get(accessor.getSessionId()) : null;
+        Long groupId = parseGroupId(destination);
+        if (userId == null || groupId == null || !membershipIndex.isMember(groupId, userId)) {
+            dropped.increment();
+            return null;
+        }
+        return message;
+    }
+
+    static Long parseGroupId(String destination) {
+        try {
+            return Long.valueOf(destination.substring(GROUP_TOPIC_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
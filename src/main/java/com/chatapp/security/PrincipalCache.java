@@ -0,0 +1,63 @@
+package com.chatapp.security;
+
+import com.chatapp.repository.UserRepository;
+import com.chatapp.service.ClusterInvalidations;
+import com.chatapp.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// username -> AuthenticatedUser for JWT-authenticated requests. Misses load a projection (no entity);
+// unknown users are not cached, so deleted accounts stop authenticating once their entry is invalidated.
+@Component
+public class PrincipalCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ClusterInvalidations invalidations;
+
+    @Value("${app.security.principal-cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${app.security.principal-cache.ttl:PT5M}")
+    private Duration ttl;
+
+    private Cache<String, AuthenticatedUser> principals;
+
+    @PostConstruct
+    public void init() {
+        principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "principals");
+        invalidations.register(ClusterInvalidations.Kind.PRINCIPAL, inv -> principals.invalidate(inv.key()));
+    }
+
+    // Null when the user no longer exists
+    public AuthenticatedUser get(String username) {
+        return principals.get(username, name -> userRepository.findSummaryByUsername(name)
+                .map(u -> new AuthenticatedUser(u.getId(), u.getUsername()))
+                .orElse(null));
+    }
+
+    public void invalidate(String username) {
+        TransactionUtil.afterCommit(() -> {
+            principals.invalidate(username);
+            invalidations.publish(ClusterInvalidations.Kind.PRINCIPAL, username);
+        });
+    }
+}
@@ -0,0 +1,106 @@
+package com.chatapp.security;
+
+import com.chatapp.service.GroupMembershipIndex;
+import com.chatapp.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+// Authenticates the JWT once on STOMP CONNECT and binds the principal to the session; later frames
+// reuse it. Clients may only SEND to /app/... handlers (never straight to a broker destination, which
+// would reach other users without the handlers' checks) and subscribe to their own user queues and the
+// groups they belong to.
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+    private static final String APP_PREFIX = "/app/";
+    private static final String USER_QUEUE_PREFIX = "/user/queue/";
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private GroupMembershipIndex membershipIndex;
+
+    @Autowired
+    private GroupTopicGuard groupTopicGuard;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        StompCommand command = accessor.getCommand();
+        if (command == StompCommand.CONNECT) {
+            accessor.setUser(authenticate(accessor.getFirstNativeHeader("Authorization")));
+        } else if (command == StompCommand.SEND || command == StompCommand.SUBSCRIBE) {
+            Long userId = accessor.getUser() instanceof Authentication
+                    ? CurrentUserIdArgumentResolver.currentUserId((Authentication) accessor.getUser())
+                    : null;
+            if (userId == null) {
+                throw new MessagingException("Not authenticated");
+            }
+            if (command == StompCommand.SUBSCRIBE) {
+                authorizeSubscription(userId, accessor.getSessionId(), accessor.getDestination());
+            } else if (accessor.getDestination() == null || !accessor.getDestination().startsWith(APP_PREFIX)) {
+                throw new MessagingException("Send not allowed");
+            }
+        }
+        return message;
+    }
+
+    private Authentication authenticate(String header) {
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw new MessagingException("Missing bearer token");
+        }
+        Claims claims;
+        try {
+            claims = jwtUtil.verify(header.substring(7));
+        } catch (Exception e) {
+            throw new MessagingException("Invalid token");
+        }
+        AuthenticatedUser principal = claims.getSubject() == null ? null : principalCache.get(claims.getSubject());
+        Long userId = jwtUtil.extractUserId(claims);
+        if (principal == null || (userId != null && !userId.equals(principal.getId()))) {
+            throw new MessagingException("Invalid token");
+        }
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+
+    // Deny by default: the caller's own /user/queue/... destinations (resolved to their sessions by Spring)
+    // and topics of groups they belong to. Raw /queue/... names, other topics and the relay's internal
+    // broadcast topics are refused, as are pattern subscriptions.
+    private void authorizeSubscription(Long userId, String sessionId, String destination) {
+        if (destination == null || destination.indexOf('*') >= 0 || destination.indexOf('{') >= 0) {
+            throw new MessagingException("Subscription not allowed");
+        }
+        if (destination.startsWith(USER_QUEUE_PREFIX)) {
+            return;
+        }
+        if (destination.startsWith(GroupTopicGuard.GROUP_TOPIC_PREFIX)) {
+            Long groupId = GroupTopicGuard.parseGroupId(destination);
+            if (groupId == null) {
+                throw new MessagingException("Unknown group topic");
+            }
+            if (!membershipIndex.isMember(groupId, userId)) {
+                throw new MessagingException("Not a member of this group");
+            }
+            // Re-checked on every delivery, so removal from the group stops the traffic
+            groupTopicGuard.onGroupSubscribed(sessionId, userId);
+            return;
+        }
+        throw new MessagingException("Subscription not allowed");
+    }
+}
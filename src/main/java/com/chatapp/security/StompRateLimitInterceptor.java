@@ -0,0 +1,92 @@
+package com.chatapp.security;
+
+import com.chatapp.config.WebSocketProperties;
+import com.chatapp.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Throttles inbound SEND frames per destination with two token buckets: one per session (a runaway tab)
+// and one per user (many tabs or scripts sharing an account). A refused frame fails with a
+// MessagingException, which Spring turns into a STOMP ERROR frame (then closes the session, as STOMP
+// requires), so limits are set well above what the UI sends. Runs after StompAuthChannelInterceptor,
+// so the principal is already bound.
+@Component
+public class StompRateLimitInterceptor implements ChannelInterceptor {
+
+    @Autowired
+    private WebSocketProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, TokenBucket> sessionBuckets;
+    private Cache<String, TokenBucket> userBuckets;
+    private final ConcurrentHashMap<String, Counter> throttled = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Duration idle = Duration.ofSeconds(properties.getRateLimit().getIdleExpirySeconds());
+        sessionBuckets = Caffeine.newBuilder().expireAfterAccess(idle).build();
+        userBuckets = Caffeine.newBuilder().expireAfterAccess(idle).build();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!properties.getRateLimit().isEnabled()) {
+            return message;
+        }
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.SEND || accessor.getDestination() == null) {
+            return message;
+        }
+        String destination = accessor.getDestination();
+        WebSocketProperties.Limit limit = properties.getRateLimit().getDestinations().get(destination);
+        if (limit == null) {
+            return message;
+        }
+
+        if (limit.getSessionPerSecond() > 0 && accessor.getSessionId() != null) {
+            TokenBucket bucket = sessionBuckets.get(accessor.getSessionId() + "|" + destination,
+                    key -> new TokenBucket(limit.getSessionPerSecond(), limit.getSessionBurst()));
+            reject(bucket.tryAcquire(), destination, "session");
+        }
+        Long userId = accessor.getUser() instanceof Authentication
+                ? CurrentUserIdArgumentResolver.currentUserId((Authentication) accessor.getUser())
+                : null;
+        if (limit.getUserPerSecond() > 0 && userId != null) {
+            TokenBucket bucket = userBuckets.get(userId + "|" + destination,
+                    key -> new TokenBucket(limit.getUserPerSecond(), limit.getUserBurst()));
+            reject(bucket.tryAcquire(), destination, "user");
+        }
+        return message;
+    }
+
+    private void reject(long waitNanos, String destination, String scope) {
+        if (waitNanos == 0) {
+            return;
+        }
+        throttled.computeIfAbsent(destination + "|" + scope, key -> Counter.builder("chat.ws.throttled")
+                .tag("destination", destination)
+                .tag("scope", scope)
+                .register(meterRegistry)).increment();
+        long retryMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        throw new MessagingException("Rate limit exceeded for " + destination + "; retry in " + retryMs + " ms");
+    }
+}
@@ -0,0 +1,64 @@
+package com.chatapp.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+// Moves payloads left in the old LONGBLOB columns into the blob store, a batch at a time
+@Service
+public class BlobMigrationService {
+    private static final int BATCH_SIZE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Value("${app.blob.migrate-legacy:true}")
+    private boolean enabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyBlobs() {
+        if (!enabled) {
+            return;
+        }
+        migrate("messages", "media_data", "media_type", "media_key", "media_size");
+        migrate("group_messages", "media_data", "media_type", "media_key", "media_size");
+        migrate("users", "profile_picture", "profile_picture_type", "profile_picture_key", "profile_picture_size");
+        migrate("chat_groups", "group_image", "group_image_type", "group_image_key", "group_image_size");
+    }
+
+    private void migrate(String table, String blobColumn, String typeColumn, String keyColumn, String sizeColumn) {
+        String select = "SELECT id, " + blobColumn + " AS data, " + typeColumn + " AS type FROM " + table
+                + " WHERE " + blobColumn + " IS NOT NULL LIMIT " + BATCH_SIZE;
+        String update = "UPDATE " + table + " SET " + keyColumn + " = ?, " + sizeColumn + " = ?, "
+                + blobColumn + " = NULL WHERE id = ?";
+        int migrated = 0;
+        try {
+            List<Map<String, Object>> rows;
+            while (!(rows = jdbcTemplate.queryForList(select)).isEmpty()) {
+                for (Map<String, Object> row : rows) {
+                    BlobStorageService.StoredBlob blob = blobStorageService.store(
+                            (byte[]) row.get("data"), (String) row.get("type"));
+                    jdbcTemplate.update(update, blob.getKey(), blob.getSize(), row.get("id"));
+                    migrated++;
+                }
+            }
+        } catch (DataAccessException e) {
+            // Fresh schemas never had the legacy column
+        } catch (Exception e) {
+            System.err.println("ERROR: Blob migration failed for " + table + "." + blobColumn + ": " + e.getMessage());
+        }
+        if (migrated > 0) {
+            System.out.println("INFO: Migrated " + migrated + " legacy blobs from " + table + "." + blobColumn);
+        }
+    }
+}
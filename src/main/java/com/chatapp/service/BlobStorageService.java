@@ -0,0 +1,144 @@
+package com.chatapp.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+@Service
+public class BlobStorageService {
+    public static final String URL_PREFIX = "/api/media/";
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    @Value("${app.blob.storage-dir:data/blobs}")
+    private String storageDir;
+
+    private Path root;
+    private Path tmpDir;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(storageDir).toAbsolutePath().normalize();
+        tmpDir = root.resolve("tmp");
+        Files.createDirectories(tmpDir);
+    }
+
+    public StoredBlob store(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return store(in, file.getContentType());
+        }
+    }
+
+    public StoredBlob store(byte[] data, String contentType) throws IOException {
+        try (InputStream in = new ByteArrayInputStream(data)) {
+            return store(in, contentType);
+        }
+    }
+
+    // Streams the payload to a temp file while hashing it, then moves it to its SHA-256 address.
+    // Identical payloads resolve to the same key and are only written once. The content type is not
+    // stored with the blob: each referencing row keeps the type its uploader declared (see urlFor).
+    public StoredBlob store(InputStream in, String contentType) throws IOException {
+        String type = contentType == null || contentType.isBlank() ? DEFAULT_CONTENT_TYPE : contentType;
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        try {
+            MessageDigest digest = newDigest();
+            long size;
+            try (DigestInputStream digestIn = new DigestInputStream(in, digest)) {
+                size = Files.copy(digestIn, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path target = pathFor(key);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target);
+                } catch (FileAlreadyExistsException e) {
+                    // Another upload of the same content won the race
+                }
+            }
+            return new StoredBlob(key, size, type);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public Path resolve(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new RuntimeException("Invalid media key");
+        }
+        Path path = pathFor(key);
+        if (!Files.isRegularFile(path)) {
+            throw new RuntimeException("Media not found");
+        }
+        return path;
+    }
+
+    // The type travels with the reference, so two uploads of the same bytes keep their own types
+    public static String urlFor(String key, String contentType) {
+        if (key == null) {
+            return null;
+        }
+        if (contentType == null || contentType.isBlank()) {
+            return URL_PREFIX + key;
+        }
+        return URL_PREFIX + key + "?type=" + URLEncoder.encode(contentType, StandardCharsets.UTF_8);
+    }
+
+    private Path pathFor(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class StoredBlob {
+        private final String key;
+        private final long size;
+        private final String contentType;
+
+        public StoredBlob(String key, long size, String contentType) {
+            this.key = key;
+            this.size = size;
+            this.contentType = contentType;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+}
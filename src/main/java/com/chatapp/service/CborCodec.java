@@ -0,0 +1,165 @@
+package com.chatapp.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// CBOR as an alternative to JSON for STOMP bodies. Inbound, a SEND with content-type application/cbor is
+// decoded by messageConverter(). Outbound, a session opts in by sending content-type application/cbor on
+// CONNECT; JSON bodies bound for it are transcoded token by token (no object mapping) and its frames go
+// out as binary WebSocket messages. SockJS is text-only, so SockJS sessions always stay on JSON.
+@Service
+public class CborCodec implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+    // Sessions able to receive binary frames; true once CBOR is negotiated on CONNECT
+    private final ConcurrentHashMap<String, Boolean> binarySessions = new ConcurrentHashMap<>();
+    private Counter negotiated;
+    private Counter transcoded;
+
+    @PostConstruct
+    public void init() {
+        negotiated = Counter.builder("chat.ws.codec.sessions").tag("codec", "cbor").register(meterRegistry);
+        transcoded = Counter.builder("chat.ws.codec.transcoded").tag("codec", "cbor").register(meterRegistry);
+    }
+
+    public MessageConverter messageConverter() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(APPLICATION_CBOR);
+        converter.setObjectMapper(cborMapper);
+        // Never claim frames that carry no content-type; those stay with the JSON converter
+        converter.setStrictContentTypeMatch(true);
+        return converter;
+    }
+
+    public boolean isCborSession(String sessionId) {
+        return sessionId != null && Boolean.TRUE.equals(binarySessions.get(sessionId));
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String requested = accessor.getFirstNativeHeader("content-type");
+        String sessionId = accessor.getSessionId();
+        if (requested == null || sessionId == null || !APPLICATION_CBOR.isCompatibleWith(MimeTypeUtils.parseMimeType(requested))) {
+            return;
+        }
+        if (binarySessions.replace(sessionId, Boolean.FALSE, Boolean.TRUE)) {
+            negotiated.increment();
+        }
+    }
+
+    // Outbound channel
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || !isCborSession(accessor.getSessionId())
+                || !(message.getPayload() instanceof byte[] json)
+                || accessor.getContentType() == null
+                || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(accessor.getContentType())) {
+            return message;
+        }
+        try {
+            // Shared bodies are transcoded once for all of their CBOR sessions
+            byte[] cbor = accessor.getHeader(EncodedPayload.HEADER) instanceof EncodedPayload encoded
+                    ? encoded.cbor(this::transcode)
+                    : transcode(json);
+            accessor.setContentType(APPLICATION_CBOR);
+            if (accessor.getNativeHeader("content-type") != null) {
+                accessor.setNativeHeader("content-type", APPLICATION_CBOR.toString());
+            }
+            transcoded.increment();
+            return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+        } catch (IOException e) {
+            System.err.println("ERROR: CBOR transcoding failed, sending JSON: " + e.getMessage());
+            return message;
+        }
+    }
+
+    public byte[] transcode(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = jsonMapper.getFactory().createParser(json);
+             JsonGenerator generator = cborMapper.getFactory().createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                // Outer decorators (SlowConsumerGuard, TransportMetrics) have already wrapped the session
+                if (WebSocketSessionDecorator.unwrap(session) instanceof SockJsSession) {
+                    super.afterConnectionEstablished(session);
+                    return;
+                }
+                binarySessions.put(session.getId(), Boolean.FALSE);
+                super.afterConnectionEstablished(new BinaryFrameSession(session));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                binarySessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    // Spring writes every STOMP frame that is not application/octet-stream as a text message; the
+    // bytes are kept as-is, so a CBOR session gets them re-wrapped as a binary message instead
+    private class BinaryFrameSession extends WebSocketSessionDecorator {
+
+        BinaryFrameSession(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (message instanceof TextMessage text && isCborSession(getId())) {
+                super.sendMessage(new BinaryMessage(text.asBytes(), text.isLast()));
+            } else {
+                super.sendMessage(message);
+            }
+        }
+    }
+}
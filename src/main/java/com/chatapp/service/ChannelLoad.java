@@ -0,0 +1,52 @@
+package com.chatapp.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load signal for the STOMP channels: how long tasks wait between being handed to a channel executor and
+// starting to run, as a moving average per channel. Unlike a queue size it means the same thing for the
+// thread pool (time in its queue) and for virtual threads (time blocked on the concurrency limit).
+@Component
+public class ChannelLoad {
+    // Weight of the newest sample in the moving average
+    private static final double WEIGHT = 0.1;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, AtomicLong> averageWaitNanos = new ConcurrentHashMap<>();
+
+    // Installed on the channel executor by WebSocketConfig
+    public TaskDecorator decorator(String channel) {
+        AtomicLong average = averageWaitNanos.computeIfAbsent(channel, name -> {
+            AtomicLong value = new AtomicLong();
+            TimeGauge.builder("chat.ws.channel.wait", value, TimeUnit.NANOSECONDS, AtomicLong::get)
+                    .tag("channel", name).register(meterRegistry);
+            return value;
+        });
+        return task -> {
+            long submitted = System.nanoTime();
+            return () -> {
+                long wait = System.nanoTime() - submitted;
+                average.getAndUpdate(current -> current + (long) ((wait - current) * WEIGHT));
+                task.run();
+            };
+        };
+    }
+
+    // The larger of the channels' average waits
+    public long maxAverageWaitMillis() {
+        long max = 0;
+        for (AtomicLong average : averageWaitNanos.values()) {
+            max = Math.max(max, average.get());
+        }
+        return TimeUnit.NANOSECONDS.toMillis(max);
+    }
+}
@@ -1,23 +1,36 @@
 package com.chatapp.service;
 
 import com.chatapp.dto.MessageDTO;
+import com.chatapp.dto.MessagePageDTO;
 import com.chatapp.entity.Message;
 import com.chatapp.entity.User;
+import com.chatapp.repository.ConversationReadStateRepository;
 import com.chatapp.repository.MessageRepository;
 import com.chatapp.repository.UserRepository;
-import com.chatapp.util.Base64Util;
+import com.chatapp.util.MessageCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class ChatService {
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final Comparator<Message> CHRONOLOGICAL =
+            Comparator.comparing(Message::getTimestamp).thenComparing(Message::getId);
+
     @Autowired
     private MessageRepository messageRepository;
 
@@ -27,6 +40,18 @@ public class ChatService {
     @Autowired
     private FriendService friendService;
 
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private ConversationReadStateRepository readStateRepository;
+
+    @Autowired
+    private MessagePipeline messagePipeline;
+
+    @Autowired
+    private MessageSearchService searchService;
+
     public Message sendMessage(Long senderId, Long receiverId, String content, Message.MessageType type) {
         User sender = userRepository.findById(senderId)
                 .orElseThrow(() -> new RuntimeException("Sender not found"));
@@ -42,7 +67,9 @@ public class ChatService {
         message.setReceiver(receiver);
         message.setContent(content);
         message.setType(type);
-        return messageRepository.save(message);
+        Message saved = messageRepository.save(message);
+        searchService.indexMessage(saved);
+        return saved;
     }
 
     public Message sendMediaMessage(Long senderId, Long receiverId, MultipartFile file, Message.MessageType type) throws IOException {
@@ -55,15 +82,29 @@ public class ChatService {
             throw new RuntimeException("Users are not friends");
         }
 
+        BlobStorageService.StoredBlob blob = blobStorageService.store(file);
+        if (messagePipeline.isEnabled()) {
+            // Pipeline mode owns message ids, so this write must not use an IDENTITY value
+            MessagePipeline.PendingMessage pending = new MessagePipeline.PendingMessage(messagePipeline.nextId(),
+                    senderId, receiverId, file.getOriginalFilename(), type.name(), blob.getKey(), blob.getSize(),
+                    blob.getContentType(), file.getOriginalFilename(), LocalDateTime.now());
+            messagePipeline.persistNow(pending);
+            return messageRepository.findById(pending.getId())
+                    .orElseThrow(() -> new RuntimeException("Message not found"));
+        }
+
         Message message = new Message();
         message.setSender(sender);
         message.setReceiver(receiver);
         message.setContent(file.getOriginalFilename());
         message.setType(type);
-        message.setMediaData(file.getBytes());
-        message.setMediaType(file.getContentType());
+        message.setMediaKey(blob.getKey());
+        message.setMediaSize(blob.getSize());
+        message.setMediaType(blob.getContentType());
         message.setFileName(file.getOriginalFilename());
-        return messageRepository.save(message);
+        Message saved = messageRepository.save(message);
+        searchService.indexMessage(saved);
+        return saved;
     }
 
     public List<MessageDTO> getConversation(Long userId1, Long userId2) {
@@ -72,35 +113,86 @@ public class ChatService {
         User user2 = userRepository.findById(userId2)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        ReadWatermarks watermarks = loadWatermarks(userId1, userId2);
         return messageRepository.findConversation(user1, user2)
                 .stream()
-                .map(this::convertToDTO)
+                .map(m -> convertToDTO(m, watermarks))
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public MessagePageDTO getConversationPage(Long userId1, Long userId2, String beforeCursor, String afterCursor, int limit) {
+        if (beforeCursor != null && afterCursor != null) {
+            throw new RuntimeException("Only one of before/after may be specified");
+        }
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Fetch one extra row per direction so we know whether another page exists
+        Pageable window = PageRequest.of(0, size + 1);
+        MessageCursor before = MessageCursor.decode(beforeCursor);
+        MessageCursor after = MessageCursor.decode(afterCursor);
+
+        List<Message> merged = new ArrayList<>();
+        if (after != null) {
+            merged.addAll(messageRepository.findDirectedAfter(userId1, userId2, after.getTimestamp(), after.getId(), window));
+            merged.addAll(messageRepository.findDirectedAfter(userId2, userId1, after.getTimestamp(), after.getId(), window));
+            merged.sort(CHRONOLOGICAL);
+        } else {
+            if (before != null) {
+                merged.addAll(messageRepository.findDirectedBefore(userId1, userId2, before.getTimestamp(), before.getId(), window));
+                merged.addAll(messageRepository.findDirectedBefore(userId2, userId1, before.getTimestamp(), before.getId(), window));
+            } else {
+                merged.addAll(messageRepository.findLatestDirected(userId1, userId2, window));
+                merged.addAll(messageRepository.findLatestDirected(userId2, userId1, window));
+            }
+            merged.sort(CHRONOLOGICAL.reversed());
+        }
+
+        boolean hasMore = merged.size() > size;
+        List<Message> page = new ArrayList<>(merged.subList(0, Math.min(size, merged.size())));
+        if (after == null) {
+            Collections.reverse(page);
+        }
+
+        ReadWatermarks watermarks = loadWatermarks(userId1, userId2);
+        MessagePageDTO dto = new MessagePageDTO();
+        dto.setMessages(page.stream().map(m -> convertToDTO(m, watermarks)).collect(Collectors.toList()));
+        dto.setHasMore(hasMore);
+        if (!page.isEmpty()) {
+            Message oldest = page.get(0);
+            Message newest = page.get(page.size() - 1);
+            dto.setOldestCursor(new MessageCursor(oldest.getTimestamp(), oldest.getId()).encode());
+            dto.setNewestCursor(new MessageCursor(newest.getTimestamp(), newest.getId()).encode());
+        }
+        return dto;
+    }
+
     public void markAsRead(Long messageId) {
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
-        message.setRead(true);
-        messageRepository.save(message);
+        readStateRepository.markReadUpTo(message.getReceiver().getId(), message.getSender().getId(), message.getId());
     }
 
-    public void markConversationAsRead(Long userId1, Long userId2) {
-        User user1 = userRepository.findById(userId1)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        User user2 = userRepository.findById(userId2)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    // Advances the reader's watermark in one statement instead of updating every unread row
+    public void markConversationAsRead(Long readerId, Long peerId) {
+        readStateRepository.markReadUpToLatest(readerId, peerId);
+    }
 
-        List<Message> messages = messageRepository.findConversation(user1, user2);
-        messages.stream()
-                .filter(m -> m.getReceiver().getId().equals(userId1) && !m.isRead())
-                .forEach(m -> {
-                    m.setRead(true);
-                    messageRepository.save(m);
-                });
+    private ReadWatermarks loadWatermarks(Long userId1, Long userId2) {
+        return new ReadWatermarks(userId1,
+                readStateRepository.findWatermark(userId1, userId2),
+                readStateRepository.findWatermark(userId2, userId1));
     }
 
+    // For a message that was just sent: the receiver cannot have read it yet, so no watermark lookup
     public MessageDTO convertToDTO(Message message) {
+        return convertToDTO(message, (Long) null);
+    }
+
+    private MessageDTO convertToDTO(Message message, ReadWatermarks watermarks) {
+        return convertToDTO(message, watermarks.forMessage(message));
+    }
+
+    private MessageDTO convertToDTO(Message message, Long watermark) {
         MessageDTO dto = new MessageDTO();
         dto.setId(message.getId());
         dto.setSenderId(message.getSender().getId());
@@ -110,15 +202,32 @@ public class ChatService {
         dto.setReceiverName(message.getReceiver().getName());
         dto.setContent(message.getContent());
         dto.setType(message.getType().name());
-        if (message.getMediaData() != null) {
-            dto.setMediaDataBase64(Base64Util.encode(message.getMediaData()));
+        if (message.getMediaKey() != null) {
+            dto.setMediaUrl(BlobStorageService.urlFor(message.getMediaKey(), message.getMediaType()));
+            dto.setMediaSize(message.getMediaSize());
             dto.setMediaType(message.getMediaType());
             dto.setFileName(message.getFileName());
         }
-        dto.setRead(message.isRead());
+        // The legacy per-row flag still covers messages read before watermarks existed
+        dto.setRead(message.isRead() || (watermark != null && message.getId() <= watermark));
         dto.setTimestamp(message.getTimestamp());
         return dto;
     }
-}
 
+    // Watermarks for both directions of one conversation, loaded once per request
+    private static class ReadWatermarks {
+        private final Long userId1;
+        private final Long readByUser1;
+        private final Long readByUser2;
 
+        ReadWatermarks(Long userId1, Long readByUser1, Long readByUser2) {
+            this.userId1 = userId1;
+            this.readByUser1 = readByUser1;
+            this.readByUser2 = readByUser2;
+        }
+
+        Long forMessage(Message message) {
+            return message.getReceiver().getId().equals(userId1) ? readByUser1 : readByUser2;
+        }
+    }
+}
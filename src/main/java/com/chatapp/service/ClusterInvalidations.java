@@ -0,0 +1,78 @@
+package com.chatapp.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps the per-node caches and indexes (friendship graph, group membership, principals, user search,
+// the pipeline's user cache and the Lucene message index) in step across a cluster. Each of them applies
+// a change locally and publishes it here once the transaction has committed; with app.cluster.bus=tcp the
+// bus forwards it to every peer, which hands it to the handler registered for its kind. Without a cluster
+// bus there is no forwarder and publishing is a no-op.
+@Component
+public class ClusterInvalidations {
+
+    public enum Kind {
+        FRIENDSHIP_ADDED,
+        FRIENDSHIP_REMOVED,
+        FRIENDSHIP_USER_REMOVED,
+        GROUP_MEMBERSHIP,
+        GROUP_MEMBERS,
+        USER_GROUPS,
+        PRINCIPAL,
+        USER_PROFILE,
+        USER_REMOVED,
+        PIPELINE_USER,
+        DIRECT_MESSAGE,
+        GROUP_MESSAGE,
+        USER_MESSAGES_REMOVED
+    }
+
+    // key carries a username for PRINCIPAL and is empty otherwise
+    public record Invalidation(Kind kind, String key, long[] ids) {
+    }
+
+    public interface Handler {
+        void apply(Invalidation invalidation);
+    }
+
+    public interface Forwarder {
+        void forward(Invalidation invalidation);
+    }
+
+    private final Map<Kind, Handler> handlers = new ConcurrentHashMap<>();
+    private volatile Forwarder forwarder;
+
+    public void register(Kind kind, Handler handler) {
+        handlers.put(kind, handler);
+    }
+
+    public void setForwarder(Forwarder forwarder) {
+        this.forwarder = forwarder;
+    }
+
+    public void publish(Kind kind, long... ids) {
+        publish(kind, "", ids);
+    }
+
+    public void publish(Kind kind, String key, long... ids) {
+        Forwarder f = forwarder;
+        if (f != null) {
+            f.forward(new Invalidation(kind, key, ids));
+        }
+    }
+
+    // Called by the bus for invalidations received from a peer; never re-published
+    public void applyRemote(Invalidation invalidation) {
+        Handler handler = handlers.get(invalidation.kind());
+        if (handler == null) {
+            return;
+        }
+        try {
+            handler.apply(invalidation);
+        } catch (RuntimeException e) {
+            System.err.println("ERROR: Failed to apply cluster invalidation " + invalidation.kind() + ": " + e.getMessage());
+        }
+    }
+}
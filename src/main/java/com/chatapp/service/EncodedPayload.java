@@ -0,0 +1,35 @@
+package com.chatapp.service;
+
+import java.io.IOException;
+
+// One outbound body, serialized once and shared by every recipient session. The arrays are never
+// modified after construction. Travels with the message as a header so that per-session codecs
+// (CborCodec) also convert it once instead of once per session.
+public final class EncodedPayload {
+    public static final String HEADER = "chatEncodedPayload";
+
+    public interface Transcoder {
+        byte[] transcode(byte[] json) throws IOException;
+    }
+
+    private final byte[] json;
+    private volatile byte[] cbor;
+
+    EncodedPayload(byte[] json) {
+        this.json = json;
+    }
+
+    public byte[] json() {
+        return json;
+    }
+
+    // Racing sessions may both transcode; either result is identical
+    public byte[] cbor(Transcoder transcoder) throws IOException {
+        byte[] encoded = cbor;
+        if (encoded == null) {
+            encoded = transcoder.transcode(json);
+            cbor = encoded;
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,74 @@
+package com.chatapp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+// Serialize-once delivery for the message buses. A payload is encoded to JSON bytes once and every
+// destination (sender and receiver queues, a group topic, peer nodes) gets the same array; the broker
+// fans it out to sessions without converting again. encoded_bytes / deliveries is the serialized
+// bytes per destination.
+@Service
+public class FanOutEncoder {
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter encodedBytes;
+    private Counter deliveries;
+
+    @PostConstruct
+    public void init() {
+        encodedBytes = Counter.builder("chat.fanout.encoded_bytes").register(meterRegistry);
+        deliveries = Counter.builder("chat.fanout.deliveries").register(meterRegistry);
+    }
+
+    public EncodedPayload encode(Object payload) {
+        if (payload instanceof EncodedPayload encoded) {
+            return encoded;
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(payload);
+            encodedBytes.increment(json.length);
+            return new EncodedPayload(json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize outbound payload", e);
+        }
+    }
+
+    public EncodedPayload wrap(byte[] json) {
+        return new EncodedPayload(json);
+    }
+
+    // Resolved to the user's sessions by the user destination handler, as with convertAndSendToUser
+    public void sendToUser(Long userId, String destination, EncodedPayload payload) {
+        send("/user/" + userId + destination, payload);
+    }
+
+    public void send(String destination, EncodedPayload payload) {
+        // Fresh headers per send (the template seals them); the body array is shared
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(EncodedPayload.HEADER, payload);
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(payload.json(), accessor.getMessageHeaders());
+        messagingTemplate.send(destination, message);
+        deliveries.increment();
+    }
+}
@@ -21,6 +21,9 @@ public class FriendService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private FriendshipGraph friendshipGraph;
+
     public FriendRequest sendFriendRequest(Long senderId, Long receiverId) {
         if (senderId.equals(receiverId)) {
             throw new RuntimeException("Cannot send friend request to yourself");
@@ -47,12 +50,17 @@ public class FriendService {
         FriendRequest request = friendRequestRepository.findById(requestId)
                 .orElseThrow(() -> new RuntimeException("Friend request not found"));
         request.setStatus(FriendRequest.FriendRequestStatus.ACCEPTED);
-        return friendRequestRepository.save(request);
+        FriendRequest saved = friendRequestRepository.save(request);
+        friendshipGraph.addFriendship(request.getSender().getId(), request.getReceiver().getId());
+        return saved;
     }
 
     public FriendRequest rejectFriendRequest(Long requestId) {
         FriendRequest request = friendRequestRepository.findById(requestId)
                 .orElseThrow(() -> new RuntimeException("Friend request not found"));
+        if (request.getStatus() == FriendRequest.FriendRequestStatus.ACCEPTED) {
+            friendshipGraph.removeFriendship(request.getSender().getId(), request.getReceiver().getId());
+        }
         request.setStatus(FriendRequest.FriendRequestStatus.REJECTED);
         return friendRequestRepository.save(request);
     }
@@ -76,21 +84,26 @@ public class FriendService {
     }
 
     public List<FriendRequestDTO> getAcceptedFriends(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        List<FriendRequest> sent = friendRequestRepository.findBySenderAndStatus(user, FriendRequest.FriendRequestStatus.ACCEPTED);
-        List<FriendRequest> received = friendRequestRepository.findByReceiverAndStatus(user, FriendRequest.FriendRequestStatus.ACCEPTED);
-        
-        // Combine sent and received accepted requests
-        List<FriendRequest> allAccepted = new java.util.ArrayList<>(sent);
-        allAccepted.addAll(received);
-        
-        return allAccepted.stream()
+        if (friendshipGraph.isReady()) {
+            // Users without friends never touch the database
+            if (friendshipGraph.friendsOf(userId).length == 0) {
+                return List.of();
+            }
+        } else {
+            friendshipGraph.recordMiss();
+        }
+        return friendRequestRepository.findAcceptedByUserId(userId)
+                .stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
     public boolean areFriends(Long userId1, Long userId2) {
+        if (friendshipGraph.isReady()) {
+            return friendshipGraph.areFriends(userId1, userId2);
+        }
+        friendshipGraph.recordMiss();
+
         User user1 = userRepository.findById(userId1)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         User user2 = userRepository.findById(userId2)
@@ -128,6 +141,7 @@ public class FriendService {
         if (!removed) {
             throw new RuntimeException("You are not friends with this user");
         }
+        friendshipGraph.removeFriendship(userId, friendId);
     }
 
     private FriendRequestDTO convertToDTO(FriendRequest request) {
@@ -0,0 +1,244 @@
+package com.chatapp.service;
+
+import com.chatapp.util.TransactionUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-memory view of accepted friendships. Each user maps to a sorted long[] of friend ids that is
+// replaced copy-on-write, so lookups are a lock-free binary search and writers (rare) serialise.
+@Service
+public class FriendshipGraph {
+    private static final long[] EMPTY = new long[0];
+    // Rough per-user overhead of a ConcurrentHashMap node, boxed key and array header
+    private static final long BYTES_PER_NODE = 80;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ClusterInvalidations invalidations;
+
+    private volatile ConcurrentHashMap<Long, long[]> adjacency = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    private boolean warming;
+    private final List<Runnable> pendingDuringWarmup = new ArrayList<>();
+
+    private final AtomicLong edgeSlots = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("chat.friend_graph.users", this, g -> g.adjacency.size()).register(meterRegistry);
+        Gauge.builder("chat.friend_graph.edges", this, FriendshipGraph::edgeCount).register(meterRegistry);
+        Gauge.builder("chat.friend_graph.memory", this, FriendshipGraph::estimatedBytes)
+                .baseUnit("bytes").register(meterRegistry);
+        FunctionCounter.builder("chat.friend_graph.lookups", hits, LongAdder::sum)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("chat.friend_graph.lookups", misses, LongAdder::sum)
+                .tag("result", "miss").register(meterRegistry);
+        invalidations.register(ClusterInvalidations.Kind.FRIENDSHIP_ADDED,
+                inv -> applyAdd(inv.ids()[0], inv.ids()[1]));
+        invalidations.register(ClusterInvalidations.Kind.FRIENDSHIP_REMOVED,
+                inv -> applyRemove(inv.ids()[0], inv.ids()[1]));
+        invalidations.register(ClusterInvalidations.Kind.FRIENDSHIP_USER_REMOVED,
+                inv -> applyRemoveUser(inv.ids()[0]));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        synchronized (this) {
+            warming = true;
+        }
+        Map<Long, GrowableLongs> buffers = new HashMap<>();
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        // MySQL streams rows one at a time with this fetch size instead of buffering the whole result
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        streaming.query("SELECT sender_id, receiver_id FROM friend_requests WHERE status = 'ACCEPTED'", rs -> {
+            long a = rs.getLong(1);
+            long b = rs.getLong(2);
+            buffers.computeIfAbsent(a, k -> new GrowableLongs()).add(b);
+            buffers.computeIfAbsent(b, k -> new GrowableLongs()).add(a);
+        });
+
+        ConcurrentHashMap<Long, long[]> built = new ConcurrentHashMap<>(Math.max(16, buffers.size() * 4 / 3));
+        long slots = 0;
+        for (Map.Entry<Long, GrowableLongs> entry : buffers.entrySet()) {
+            long[] neighbours = entry.getValue().toSortedDistinct();
+            built.put(entry.getKey(), neighbours);
+            slots += neighbours.length;
+        }
+
+        synchronized (this) {
+            adjacency = built;
+            edgeSlots.set(slots);
+            warming = false;
+            // Apply changes committed while the snapshot was loading
+            pendingDuringWarmup.forEach(Runnable::run);
+            pendingDuringWarmup.clear();
+            ready = true;
+        }
+        System.out.println("INFO: Friendship graph loaded: " + built.size() + " users, " + edgeCount() + " friendships");
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean areFriends(long userId1, long userId2) {
+        hits.increment();
+        long[] neighbours = adjacency.get(userId1);
+        return neighbours != null && Arrays.binarySearch(neighbours, userId2) >= 0;
+    }
+
+    public long[] friendsOf(long userId) {
+        hits.increment();
+        return adjacency.getOrDefault(userId, EMPTY);
+    }
+
+    // Callers fall back to the database while the graph is warming up
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void addFriendship(long userId1, long userId2) {
+        TransactionUtil.afterCommit(() -> {
+            applyAdd(userId1, userId2);
+            invalidations.publish(ClusterInvalidations.Kind.FRIENDSHIP_ADDED, userId1, userId2);
+        });
+    }
+
+    public void removeFriendship(long userId1, long userId2) {
+        TransactionUtil.afterCommit(() -> {
+            applyRemove(userId1, userId2);
+            invalidations.publish(ClusterInvalidations.Kind.FRIENDSHIP_REMOVED, userId1, userId2);
+        });
+    }
+
+    public void removeUser(long userId) {
+        TransactionUtil.afterCommit(() -> {
+            applyRemoveUser(userId);
+            invalidations.publish(ClusterInvalidations.Kind.FRIENDSHIP_USER_REMOVED, userId);
+        });
+    }
+
+    private void applyAdd(long userId1, long userId2) {
+        mutate(() -> {
+            insert(userId1, userId2);
+            insert(userId2, userId1);
+        });
+    }
+
+    private void applyRemove(long userId1, long userId2) {
+        mutate(() -> {
+            delete(userId1, userId2);
+            delete(userId2, userId1);
+        });
+    }
+
+    private void applyRemoveUser(long userId) {
+        mutate(() -> {
+            long[] neighbours = adjacency.remove(userId);
+            if (neighbours != null) {
+                edgeSlots.addAndGet(-neighbours.length);
+                for (long friendId : neighbours) {
+                    delete(friendId, userId);
+                }
+            }
+        });
+    }
+
+    public long edgeCount() {
+        return edgeSlots.get() / 2;
+    }
+
+    public long estimatedBytes() {
+        return adjacency.size() * BYTES_PER_NODE + edgeSlots.get() * Long.BYTES;
+    }
+
+    private synchronized void mutate(Runnable change) {
+        if (warming) {
+            pendingDuringWarmup.add(change);
+        }
+        change.run();
+    }
+
+    private void insert(long from, long to) {
+        long[] current = adjacency.getOrDefault(from, EMPTY);
+        int pos = Arrays.binarySearch(current, to);
+        if (pos >= 0) {
+            return;
+        }
+        int insertAt = -pos - 1;
+        long[] next = new long[current.length + 1];
+        System.arraycopy(current, 0, next, 0, insertAt);
+        next[insertAt] = to;
+        System.arraycopy(current, insertAt, next, insertAt + 1, current.length - insertAt);
+        adjacency.put(from, next);
+        edgeSlots.incrementAndGet();
+    }
+
+    private void delete(long from, long to) {
+        long[] current = adjacency.get(from);
+        if (current == null) {
+            return;
+        }
+        int pos = Arrays.binarySearch(current, to);
+        if (pos < 0) {
+            return;
+        }
+        if (current.length == 1) {
+            adjacency.remove(from);
+        } else {
+            long[] next = new long[current.length - 1];
+            System.arraycopy(current, 0, next, 0, pos);
+            System.arraycopy(current, pos + 1, next, pos, current.length - pos - 1);
+            adjacency.put(from, next);
+        }
+        edgeSlots.decrementAndGet();
+    }
+
+    private static class GrowableLongs {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toSortedDistinct() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+        }
+    }
+}
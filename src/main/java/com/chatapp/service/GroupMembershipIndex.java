@@ -0,0 +1,112 @@
+package com.chatapp.service;
+
+import com.chatapp.repository.GroupMemberRepository;
+import com.chatapp.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+// Cached group membership: groupId -> sorted member ids and userId -> sorted group ids.
+// Entries are loaded on first use, evicted when cold, and invalidated after membership changes commit
+// (on every cluster node, through ClusterInvalidations).
+@Service
+public class GroupMembershipIndex {
+
+    @Autowired
+    private GroupMemberRepository groupMemberRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ClusterInvalidations invalidations;
+
+    @Value("${app.group.membership-cache.max-groups:50000}")
+    private long maxGroups;
+
+    @Value("${app.group.membership-cache.max-users:200000}")
+    private long maxUsers;
+
+    @Value("${app.group.membership-cache.expire-after-access:PT30M}")
+    private Duration expireAfterAccess;
+
+    private Cache<Long, long[]> membersByGroup;
+    private Cache<Long, long[]> groupsByUser;
+
+    @PostConstruct
+    public void init() {
+        membersByGroup = Caffeine.newBuilder()
+                .maximumSize(maxGroups)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        groupsByUser = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, membersByGroup, "groupMembers");
+        CaffeineCacheMetrics.monitor(meterRegistry, groupsByUser, "userGroups");
+        invalidations.register(ClusterInvalidations.Kind.GROUP_MEMBERSHIP, inv -> {
+            membersByGroup.invalidate(inv.ids()[0]);
+            groupsByUser.invalidate(inv.ids()[1]);
+        });
+        invalidations.register(ClusterInvalidations.Kind.GROUP_MEMBERS,
+                inv -> membersByGroup.invalidateAll(Arrays.stream(inv.ids()).boxed().toList()));
+        invalidations.register(ClusterInvalidations.Kind.USER_GROUPS, inv -> groupsByUser.invalidate(inv.ids()[0]));
+    }
+
+    public boolean isMember(Long groupId, Long userId) {
+        return Arrays.binarySearch(membersOf(groupId), userId) >= 0;
+    }
+
+    public long[] membersOf(Long groupId) {
+        return membersByGroup.get(groupId, id -> toSortedArray(groupMemberRepository.findUserIdsByGroupId(id)));
+    }
+
+    public long[] groupsOf(Long userId) {
+        return groupsByUser.get(userId, id -> toSortedArray(groupMemberRepository.findGroupIdsByUserId(id)));
+    }
+
+    public void invalidate(Long groupId, Long userId) {
+        TransactionUtil.afterCommit(() -> {
+            membersByGroup.invalidate(groupId);
+            groupsByUser.invalidate(userId);
+            invalidations.publish(ClusterInvalidations.Kind.GROUP_MEMBERSHIP, groupId, userId);
+        });
+    }
+
+    public void invalidateGroups(Collection<Long> groupIds) {
+        TransactionUtil.afterCommit(() -> {
+            membersByGroup.invalidateAll(groupIds);
+            invalidations.publish(ClusterInvalidations.Kind.GROUP_MEMBERS,
+                    groupIds.stream().mapToLong(Long::longValue).toArray());
+        });
+    }
+
+    public void invalidateUser(Long userId) {
+        TransactionUtil.afterCommit(() -> {
+            groupsByUser.invalidate(userId);
+            invalidations.publish(ClusterInvalidations.Kind.USER_GROUPS, userId);
+        });
+    }
+
+    private static long[] toSortedArray(List<Long> ids) {
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+}
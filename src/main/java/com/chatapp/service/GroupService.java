@@ -10,19 +10,22 @@ import com.chatapp.repository.ChatGroupRepository;
 import com.chatapp.repository.GroupMemberRepository;
 import com.chatapp.repository.GroupMessageRepository;
 import com.chatapp.repository.UserRepository;
-import com.chatapp.util.Base64Util;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class GroupService {
+    public static final int MAX_SEQUENCE_RANGE = 200;
+
     @Autowired
     private ChatGroupRepository chatGroupRepository;
 
@@ -38,6 +41,15 @@ public class GroupService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private GroupMembershipIndex membershipIndex;
+
+    @Autowired
+    private MessageSearchService searchService;
+
     public ChatGroup createGroup(String name, String description, Long createdById, MultipartFile image) throws IOException {
         User creator = userRepository.findById(createdById)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -47,8 +59,10 @@ public class GroupService {
         group.setDescription(description);
         group.setCreatedBy(creator);
         if (image != null && !image.isEmpty()) {
-            group.setGroupImage(image.getBytes());
-            group.setGroupImageType(image.getContentType());
+            BlobStorageService.StoredBlob blob = blobStorageService.store(image);
+            group.setGroupImageKey(blob.getKey());
+            group.setGroupImageSize(blob.getSize());
+            group.setGroupImageType(blob.getContentType());
         }
         group = chatGroupRepository.save(group);
 
@@ -58,6 +72,7 @@ public class GroupService {
         admin.setUser(creator);
         admin.setRole(GroupMember.MemberRole.ADMIN);
         groupMemberRepository.save(admin);
+        membershipIndex.invalidate(group.getId(), createdById);
 
         return group;
     }
@@ -68,7 +83,7 @@ public class GroupService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        if (groupMemberRepository.existsByGroupAndUser(group, user)) {
+        if (membershipIndex.isMember(groupId, userId)) {
             throw new RuntimeException("User is already a member");
         }
 
@@ -77,6 +92,7 @@ public class GroupService {
         member.setUser(user);
         member.setRole(GroupMember.MemberRole.MEMBER);
         groupMemberRepository.save(member);
+        membershipIndex.invalidate(groupId, userId);
     }
 
     public void removeMemberFromGroup(Long groupId, Long userId) {
@@ -88,54 +104,62 @@ public class GroupService {
         GroupMember member = groupMemberRepository.findByGroupAndUser(group, user)
                 .orElseThrow(() -> new RuntimeException("User is not a member"));
         groupMemberRepository.delete(member);
+        membershipIndex.invalidate(groupId, userId);
     }
 
     public List<ChatGroupDTO> getUserGroups(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return groupMemberRepository.findByUser(user)
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found");
+        }
+        return chatGroupRepository.findAllById(toIdList(membershipIndex.groupsOf(userId)))
                 .stream()
-                .map(member -> convertToDTO(member.getGroup()))
+                .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
     public GroupMessage sendGroupMessage(Long groupId, Long senderId, String content, GroupMessage.MessageType type) {
+        if (!membershipIndex.isMember(groupId, senderId)) {
+            throw new RuntimeException("User is not a member of this group");
+        }
         ChatGroup group = chatGroupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Group not found"));
         User sender = userRepository.findById(senderId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        if (!groupMemberRepository.existsByGroupAndUser(group, sender)) {
-            throw new RuntimeException("User is not a member of this group");
-        }
-
         GroupMessage message = new GroupMessage();
         message.setGroup(group);
         message.setSender(sender);
         message.setContent(content);
         message.setType(type);
-        return groupMessageRepository.save(message);
+        message.setSequence(nextSequence(groupId));
+        GroupMessage saved = groupMessageRepository.save(message);
+        searchService.indexGroupMessage(saved);
+        return saved;
     }
 
     public GroupMessage sendGroupMediaMessage(Long groupId, Long senderId, MultipartFile file, GroupMessage.MessageType type) throws IOException {
+        if (!membershipIndex.isMember(groupId, senderId)) {
+            throw new RuntimeException("User is not a member of this group");
+        }
         ChatGroup group = chatGroupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Group not found"));
         User sender = userRepository.findById(senderId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        if (!groupMemberRepository.existsByGroupAndUser(group, sender)) {
-            throw new RuntimeException("User is not a member of this group");
-        }
-
         GroupMessage message = new GroupMessage();
         message.setGroup(group);
         message.setSender(sender);
         message.setContent(file.getOriginalFilename());
         message.setType(type);
-        message.setMediaData(file.getBytes());
-        message.setMediaType(file.getContentType());
+        BlobStorageService.StoredBlob blob = blobStorageService.store(file);
+        message.setMediaKey(blob.getKey());
+        message.setMediaSize(blob.getSize());
+        message.setMediaType(blob.getContentType());
         message.setFileName(file.getOriginalFilename());
-        return groupMessageRepository.save(message);
+        message.setSequence(nextSequence(groupId));
+        GroupMessage saved = groupMessageRepository.save(message);
+        searchService.indexGroupMessage(saved);
+        return saved;
     }
 
     public List<GroupMessageDTO> getGroupMessages(Long groupId) {
@@ -147,6 +171,26 @@ public class GroupService {
                 .collect(Collectors.toList());
     }
 
+    public List<GroupMessageDTO> getGroupMessagesBySequence(Long groupId, Long fromSequence, Long toSequence) {
+        if (fromSequence == null || toSequence == null || fromSequence > toSequence) {
+            throw new RuntimeException("Invalid sequence range");
+        }
+        return groupMessageRepository.findByGroupAndSequenceRange(groupId, fromSequence, toSequence,
+                        PageRequest.of(0, MAX_SEQUENCE_RANGE))
+                .stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> toIdList(long[] ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
+    }
+
+    private Long nextSequence(Long groupId) {
+        chatGroupRepository.incrementMessageSequence(groupId);
+        return chatGroupRepository.findMessageSequence(groupId);
+    }
+
     public ChatGroupDTO getGroupDetails(Long groupId) {
         ChatGroup group = chatGroupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Group not found"));
@@ -160,14 +204,15 @@ public class GroupService {
         dto.setDescription(group.getDescription());
         dto.setCreatedById(group.getCreatedBy().getId());
         dto.setCreatedByName(group.getCreatedBy().getName());
-        if (group.getGroupImage() != null) {
-            dto.setGroupImageBase64(Base64Util.encode(group.getGroupImage()));
+        if (group.getGroupImageKey() != null) {
+            dto.setGroupImageUrl(BlobStorageService.urlFor(group.getGroupImageKey(), group.getGroupImageType()));
+            dto.setGroupImageSize(group.getGroupImageSize());
             dto.setGroupImageType(group.getGroupImageType());
         }
         dto.setCreatedAt(group.getCreatedAt());
-        dto.setMembers(groupMemberRepository.findByGroup(group)
+        dto.setMembers(userRepository.findAllById(toIdList(membershipIndex.membersOf(group.getId())))
                 .stream()
-                .map(member -> userService.convertToDTO(member.getUser()))
+                .map(userService::convertToDTO)
                 .collect(Collectors.toList()));
         return dto;
     }
@@ -182,11 +227,13 @@ public class GroupService {
         dto.setSenderUsername(message.getSender().getUsername());
         dto.setContent(message.getContent());
         dto.setType(message.getType().name());
-        if (message.getMediaData() != null) {
-            dto.setMediaDataBase64(Base64Util.encode(message.getMediaData()));
+        if (message.getMediaKey() != null) {
+            dto.setMediaUrl(BlobStorageService.urlFor(message.getMediaKey(), message.getMediaType()));
+            dto.setMediaSize(message.getMediaSize());
             dto.setMediaType(message.getMediaType());
             dto.setFileName(message.getFileName());
         }
+        dto.setSequence(message.getSequence());
         dto.setTimestamp(message.getTimestamp());
         return dto;
     }
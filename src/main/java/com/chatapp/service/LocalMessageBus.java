@@ -0,0 +1,38 @@
+package com.chatapp.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+
+// In-JVM bus: hands everything to this node's broker. Also the right choice with the STOMP broker relay,
+// where the external broker already spans nodes.
+@Service
+@ConditionalOnProperty(name = "app.cluster.bus", havingValue = "local", matchIfMissing = true)
+public class LocalMessageBus implements MessageBus {
+
+    @Autowired
+    private FanOutEncoder fanOutEncoder;
+
+    @Override
+    public void sendToUser(Long userId, String destination, Object payload) {
+        fanOutEncoder.sendToUser(userId, destination, fanOutEncoder.encode(payload));
+    }
+
+    @Override
+    public void sendToUsers(Collection<Long> userIds, String destination, Object payload) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        EncodedPayload encoded = fanOutEncoder.encode(payload);
+        for (Long userId : userIds) {
+            fanOutEncoder.sendToUser(userId, destination, encoded);
+        }
+    }
+
+    @Override
+    public void sendToGroup(Long groupId, Object payload) {
+        fanOutEncoder.send("/topic/group/" + groupId, fanOutEncoder.encode(payload));
+    }
+}
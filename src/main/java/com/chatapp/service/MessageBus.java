@@ -0,0 +1,18 @@
+package com.chatapp.service;
+
+import java.util.Collection;
+
+// Routes real-time deliveries to whichever node holds the recipient's WebSocket sessions.
+// Implementations: LocalMessageBus (single node, or relay broker mode) and TcpMessageBus (app.cluster.bus=tcp).
+// Payloads are serialized once per call (FanOutEncoder), however many users or nodes receive them.
+public interface MessageBus {
+
+    // Delivers to /user/queue/... on every session of the user, wherever it is connected
+    void sendToUser(Long userId, String destination, Object payload);
+
+    // Same payload to several users, e.g. the receiver and the sender's other tabs
+    void sendToUsers(Collection<Long> userIds, String destination, Object payload);
+
+    // Publishes to /topic/group/{groupId} on every node with a subscribed member
+    void sendToGroup(Long groupId, Object payload);
+}
@@ -0,0 +1,42 @@
+package com.chatapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Time-ordered ids assigned before a message is persisted.
+// Layout: 40 bits of millis since 2024-01-01 | 4 bits node | 8 bits sequence, which stays
+// below 2^53 so ids survive a round trip through JavaScript numbers.
+@Component
+public class MessageIdGenerator {
+    private static final long EPOCH = 1704067200000L;
+    private static final int NODE_BITS = 4;
+    private static final int SEQUENCE_BITS = 8;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private long lastMillis = -1L;
+    private long sequence = 0L;
+
+    public MessageIdGenerator(@Value("${app.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId >= (1L << NODE_BITS)) {
+            throw new IllegalArgumentException("app.node-id must be between 0 and " + ((1L << NODE_BITS) - 1));
+        }
+        this.nodeId = nodeId;
+    }
+
+    public synchronized long nextId() {
+        // Never go backwards, even if the wall clock does
+        long now = Math.max(System.currentTimeMillis(), lastMillis);
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                // Sequence exhausted for this millisecond; borrow the next one
+                now = lastMillis + 1;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = now;
+        return ((now - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+}
@@ -0,0 +1,358 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.MessageDTO;
+import com.chatapp.dto.UserSummary;
+import com.chatapp.entity.Message;
+import com.chatapp.repository.UserRepository;
+import com.chatapp.util.TransactionUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Optional write-behind path for direct messages: validate, assign an id and deliver immediately,
+// then persist in batches from a single background writer.
+@Service
+public class MessagePipeline {
+    private static final String INSERT_SQL =
+            "INSERT INTO messages (id, sender_id, receiver_id, content, type, media_key, media_size, " +
+            "media_type, file_name, is_read, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, false, ?) " +
+            "ON DUPLICATE KEY UPDATE id = id";
+    private static final int USER_CACHE_SIZE = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FriendService friendService;
+
+    @Autowired
+    private MessageIdGenerator idGenerator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MessageSearchService searchService;
+
+    @Autowired
+    private ClusterInvalidations invalidations;
+
+    @Value("${app.chat.pipeline.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.chat.pipeline.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.chat.pipeline.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.chat.pipeline.flush-interval-ms:20}")
+    private long flushIntervalMs;
+
+    @Value("${app.chat.pipeline.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${app.chat.pipeline.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${app.chat.pipeline.dead-letter-dir:data/dead-letters}")
+    private String deadLetterDir;
+
+    private BlockingQueue<PendingMessage> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final Map<Long, UserSummary> userCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, UserSummary> eldest) {
+                    return size() > USER_CACHE_SIZE;
+                }
+            });
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        invalidations.register(ClusterInvalidations.Kind.PIPELINE_USER, inv -> userCache.remove(inv.ids()[0]));
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::runWriter, "message-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        // The writer drains whatever is still queued before exiting
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public MessageDTO submit(Long senderId, Long receiverId, String content, Message.MessageType type) {
+        UserSummary sender = lookupUser(senderId, "Sender not found");
+        UserSummary receiver = lookupUser(receiverId, "Receiver not found");
+        if (!friendService.areFriends(senderId, receiverId)) {
+            throw new RuntimeException("Users are not friends");
+        }
+
+        PendingMessage pending = new PendingMessage(idGenerator.nextId(), senderId, receiverId, content,
+                type.name(), null, null, null, null, LocalDateTime.now());
+        try {
+            if (!queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new RuntimeException("Message pipeline is saturated, please retry");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing message");
+        }
+        accepted.incrementAndGet();
+        return toDTO(pending, sender, receiver);
+    }
+
+    // Synchronous write with an application id, for paths that must not mix IDENTITY ids into pipeline mode
+    public void persistNow(PendingMessage message) {
+        writeBatch(List.of(message));
+    }
+
+    public long nextId() {
+        return idGenerator.nextId();
+    }
+
+    public void evictUser(Long userId) {
+        userCache.remove(userId);
+        TransactionUtil.afterCommit(() -> invalidations.publish(ClusterInvalidations.Kind.PIPELINE_USER, userId));
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("persisted", persisted.get());
+        stats.put("batches", batches.get());
+        stats.put("deadLettered", deadLettered.get());
+        stats.put("queueDepth", queue == null ? 0L : queue.size());
+        return stats;
+    }
+
+    private UserSummary lookupUser(Long userId, String notFoundMessage) {
+        UserSummary summary = userCache.get(userId);
+        if (summary == null) {
+            summary = userRepository.findSummaryById(userId)
+                    .orElseThrow(() -> new RuntimeException(notFoundMessage));
+            userCache.put(userId, summary);
+        }
+        return summary;
+    }
+
+    private void runWriter() {
+        replayDeadLetters();
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Flush when the batch is full or the flush interval since its first message has elapsed
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            try {
+                writeBatch(batch);
+                return;
+            } catch (Exception e) {
+                System.err.println("ERROR: Failed to persist message batch (attempt " + attempt + "): " + e.getMessage());
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        writeDeadLetters(batch);
+    }
+
+    private void writeBatch(List<PendingMessage> batch) {
+        // A row already written by an earlier attempt is a no-op, which keeps retries and dead-letter
+        // replays idempotent; any other failure (bad foreign key, truncation) still fails the batch.
+        // INSERT IGNORE would downgrade those to warnings and lose the message.
+        transactionTemplate().executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(),
+                (ps, m) -> {
+                    ps.setLong(1, m.getId());
+                    ps.setLong(2, m.getSenderId());
+                    ps.setLong(3, m.getReceiverId());
+                    ps.setString(4, m.getContent());
+                    ps.setString(5, m.getType());
+                    ps.setString(6, m.getMediaKey());
+                    ps.setObject(7, m.getMediaSize());
+                    ps.setString(8, m.getMediaType());
+                    ps.setString(9, m.getFileName());
+                    ps.setTimestamp(10, Timestamp.valueOf(m.getTimestamp()));
+                }));
+        persisted.addAndGet(batch.size());
+        batches.incrementAndGet();
+        for (PendingMessage m : batch) {
+            searchService.indexDirect(m.getId(), m.getSenderId(), m.getReceiverId(), m.getContent(), m.getTimestamp());
+        }
+    }
+
+    private TransactionTemplate transactionTemplate() {
+        if (transactionTemplate == null) {
+            transactionTemplate = new TransactionTemplate(transactionManager);
+        }
+        return transactionTemplate;
+    }
+
+    private void writeDeadLetters(List<PendingMessage> batch) {
+        Path file = Paths.get(deadLetterDir, "messages-" + System.currentTimeMillis() + "-" + batch.get(0).getId() + ".jsonl");
+        try {
+            Files.createDirectories(file.getParent());
+            List<String> lines = new ArrayList<>(batch.size());
+            for (PendingMessage message : batch) {
+                lines.add(objectMapper.writeValueAsString(message));
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8);
+            deadLettered.addAndGet(batch.size());
+            System.err.println("ERROR: Wrote " + batch.size() + " unpersisted messages to " + file);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to write dead-letter file " + file + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void replayDeadLetters() {
+        Path dir = Paths.get(deadLetterDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.jsonl")) {
+            for (Path file : files) {
+                try {
+                    List<PendingMessage> messages = new ArrayList<>();
+                    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                        if (!line.isBlank()) {
+                            messages.add(objectMapper.readValue(line, PendingMessage.class));
+                        }
+                    }
+                    if (!messages.isEmpty()) {
+                        writeBatch(messages);
+                    }
+                    Files.delete(file);
+                    System.out.println("INFO: Replayed " + messages.size() + " dead-letter messages from " + file);
+                } catch (Exception e) {
+                    System.err.println("ERROR: Failed to replay dead-letter file " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to scan dead-letter directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private MessageDTO toDTO(PendingMessage message, UserSummary sender, UserSummary receiver) {
+        MessageDTO dto = new MessageDTO();
+        dto.setId(message.getId());
+        dto.setSenderId(sender.getId());
+        dto.setSenderName(sender.getName());
+        dto.setSenderUsername(sender.getUsername());
+        dto.setReceiverId(receiver.getId());
+        dto.setReceiverName(receiver.getName());
+        dto.setContent(message.getContent());
+        dto.setType(message.getType());
+        dto.setRead(false);
+        dto.setTimestamp(message.getTimestamp());
+        return dto;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PendingMessage {
+        private Long id;
+        private Long senderId;
+        private Long receiverId;
+        private String content;
+        private String type;
+        private String mediaKey;
+        private Long mediaSize;
+        private String mediaType;
+        private String fileName;
+        private LocalDateTime timestamp;
+    }
+}
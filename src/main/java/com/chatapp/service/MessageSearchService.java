@@ -0,0 +1,439 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.SearchHitDTO;
+import com.chatapp.dto.SearchResultDTO;
+import com.chatapp.entity.GroupMessage;
+import com.chatapp.entity.Message;
+import com.chatapp.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.QueryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lucene-backed inverted index over direct and group message content, kept in local segment files.
+// Writes are applied incrementally after the owning transaction commits; readers are refreshed
+// near-real-time and the index is committed to disk periodically. In a cluster every node keeps its own
+// index, so message ids written elsewhere arrive through ClusterInvalidations and are loaded from the database.
+@Service
+public class MessageSearchService {
+    public static final int MAX_PAGE_SIZE = 50;
+    public static final int MAX_RESULT_WINDOW = 1000;
+
+    private static final String KIND_DIRECT = "direct";
+    private static final String KIND_GROUP = "group";
+    // Commit user data: message ids to resume indexing from after a restart
+    private static final String RESUME_DIRECT = "resume.direct";
+    private static final String RESUME_GROUP = "resume.group";
+
+    @Autowired
+    private GroupMembershipIndex membershipIndex;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ClusterInvalidations invalidations;
+
+    @Value("${app.search.index-dir:data/search-index}")
+    private String indexDir;
+
+    @Value("${app.search.refresh-interval-ms:1000}")
+    private long refreshIntervalMs;
+
+    @Value("${app.search.commit-interval-seconds:30}")
+    private long commitIntervalSeconds;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private FSDirectory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ScheduledExecutorService maintenance;
+    // Messages written on peer nodes, loaded from the database and indexed on the next refresh
+    private final ConcurrentLinkedQueue<Long> remoteDirect = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> remoteGroup = new ConcurrentLinkedQueue<>();
+    // Highest message ids indexed so far; the resume points trail them by one commit
+    private final AtomicLong directHighWater = new AtomicLong();
+    private final AtomicLong groupHighWater = new AtomicLong();
+    private long lastCommittedDirect;
+    private long lastCommittedGroup;
+    private long resumeDirect;
+    private long resumeGroup;
+    // Resume points stay put until the startup catch-up has finished
+    private volatile boolean catchingUp = true;
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = FSDirectory.open(Paths.get(indexDir));
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        writer = new IndexWriter(directory, config);
+        Map<String, String> commitData = new HashMap<>();
+        if (writer.getLiveCommitData() != null) {
+            writer.getLiveCommitData().forEach(e -> commitData.put(e.getKey(), e.getValue()));
+        }
+        // An empty index, or one written before resume points existed, is rebuilt from the start
+        if (writer.getDocStats().numDocs > 0) {
+            resumeDirect = Long.parseLong(commitData.getOrDefault(RESUME_DIRECT, "0"));
+            resumeGroup = Long.parseLong(commitData.getOrDefault(RESUME_GROUP, "0"));
+        }
+        lastCommittedDirect = resumeDirect;
+        lastCommittedGroup = resumeGroup;
+        searcherManager = new SearcherManager(writer, null);
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "search-index-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        invalidations.register(ClusterInvalidations.Kind.DIRECT_MESSAGE, inv -> remoteDirect.add(inv.ids()[0]));
+        invalidations.register(ClusterInvalidations.Kind.GROUP_MESSAGE, inv -> remoteGroup.add(inv.ids()[0]));
+        invalidations.register(ClusterInvalidations.Kind.USER_MESSAGES_REMOVED, inv -> {
+            long[] ids = inv.ids();
+            List<Long> groupIds = new ArrayList<>(ids.length - 1);
+            for (int i = 1; i < ids.length; i++) {
+                groupIds.add(ids[i]);
+            }
+            maintenance.execute(() -> deleteUser(ids[0], groupIds));
+        });
+        maintenance.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::commit, commitIntervalSeconds, commitIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        maintenance.shutdown();
+        commit();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    // Writes reach disk only on the periodic commit, so after a crash the index is behind the database.
+    // Each commit records where to resume, and on start the rows past that point are re-indexed (upserts
+    // are idempotent); a new or wiped index is rebuilt in full. This runs on its own thread so refresh,
+    // commits and live updates carry on meanwhile.
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpOnStart() {
+        long fromDirect = resumeDirect;
+        long fromGroup = resumeGroup;
+        Thread thread = new Thread(() -> catchUp(fromDirect, fromGroup), "search-index-catch-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void indexMessage(Message message) {
+        Document doc = directDocument(message.getId(), message.getSender().getId(), message.getReceiver().getId(),
+                message.getContent(), message.getTimestamp());
+        TransactionUtil.afterCommit(() -> {
+            upsert(doc);
+            invalidations.publish(ClusterInvalidations.Kind.DIRECT_MESSAGE, message.getId());
+        });
+    }
+
+    public void indexDirect(Long messageId, Long senderId, Long receiverId, String content, LocalDateTime timestamp) {
+        Document doc = directDocument(messageId, senderId, receiverId, content, timestamp);
+        TransactionUtil.afterCommit(() -> {
+            upsert(doc);
+            invalidations.publish(ClusterInvalidations.Kind.DIRECT_MESSAGE, messageId);
+        });
+    }
+
+    public void indexGroupMessage(GroupMessage message) {
+        Document doc = groupDocument(message.getId(), message.getGroup().getId(), message.getSender().getId(),
+                message.getContent(), message.getTimestamp());
+        TransactionUtil.afterCommit(() -> {
+            upsert(doc);
+            invalidations.publish(ClusterInvalidations.Kind.GROUP_MESSAGE, message.getId());
+        });
+    }
+
+    public void removeUser(Long userId, Collection<Long> deletedGroupIds) {
+        TransactionUtil.afterCommit(() -> {
+            deleteUser(userId, deletedGroupIds);
+            long[] ids = new long[deletedGroupIds.size() + 1];
+            ids[0] = userId;
+            int i = 1;
+            for (Long groupId : deletedGroupIds) {
+                ids[i++] = groupId;
+            }
+            invalidations.publish(ClusterInvalidations.Kind.USER_MESSAGES_REMOVED, ids);
+        });
+    }
+
+    private void deleteUser(Long userId, Collection<Long> deletedGroupIds) {
+        try {
+            writer.deleteDocuments(new Term("participant", userId.toString()), new Term("sender", userId.toString()));
+            for (Long groupId : deletedGroupIds) {
+                writer.deleteDocuments(new Term("group", groupId.toString()));
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to remove messages of user " + userId + " from search index: " + e.getMessage());
+        }
+    }
+
+    // Hits are restricted to the caller's own conversations and the groups they belong to
+    public SearchResultDTO search(Long userId, String text, Long withUserId, Long groupId, int page, int size) throws IOException {
+        if (text == null || text.isBlank()) {
+            throw new RuntimeException("Search query is required");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageIndex = Math.max(0, page);
+        int window = (pageIndex + 1) * pageSize;
+        if (window > MAX_RESULT_WINDOW) {
+            throw new RuntimeException("Result window too large, refine the query");
+        }
+
+        Query textQuery = new QueryBuilder(analyzer).createBooleanQuery("content", text, BooleanClause.Occur.MUST);
+        if (textQuery == null) {
+            return new SearchResultDTO(List.of(), 0, pageIndex, pageSize, false);
+        }
+        Query scope = scopeQuery(userId, withUserId, groupId);
+        if (scope == null) {
+            return new SearchResultDTO(List.of(), 0, pageIndex, pageSize, false);
+        }
+        Query query = new BooleanQuery.Builder()
+                .add(textQuery, BooleanClause.Occur.MUST)
+                .add(scope, BooleanClause.Occur.FILTER)
+                .build();
+
+        Sort sort = new Sort(SortField.FIELD_SCORE, new SortField("ts", SortField.Type.LONG, true));
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopFieldDocs top = searcher.search(query, window + 1, sort, true);
+            StoredFields storedFields = searcher.storedFields();
+            List<SearchHitDTO> hits = new ArrayList<>(pageSize);
+            ScoreDoc[] docs = top.scoreDocs;
+            for (int i = pageIndex * pageSize; i < Math.min(window, docs.length); i++) {
+                hits.add(toHit(storedFields.document(docs[i].doc), docs[i].score));
+            }
+            return new SearchResultDTO(hits, top.totalHits.value, pageIndex, pageSize, docs.length > window);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private Query scopeQuery(Long userId, Long withUserId, Long groupId) {
+        if (groupId != null) {
+            if (!membershipIndex.isMember(groupId, userId)) {
+                throw new RuntimeException("User is not a member of this group");
+            }
+            return new TermQuery(new Term("group", groupId.toString()));
+        }
+        if (withUserId != null) {
+            return new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term("participant", userId.toString())), BooleanClause.Occur.FILTER)
+                    .add(new TermQuery(new Term("participant", withUserId.toString())), BooleanClause.Occur.FILTER)
+                    .build();
+        }
+        BooleanQuery.Builder scope = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("participant", userId.toString())), BooleanClause.Occur.SHOULD);
+        long[] groupIds = membershipIndex.groupsOf(userId);
+        if (groupIds.length > 0) {
+            List<BytesRef> terms = new ArrayList<>(groupIds.length);
+            for (long id : groupIds) {
+                terms.add(new BytesRef(Long.toString(id)));
+            }
+            scope.add(new TermInSetQuery("group", terms), BooleanClause.Occur.SHOULD);
+        }
+        return scope.build();
+    }
+
+    private SearchHitDTO toHit(Document doc, float score) {
+        SearchHitDTO hit = new SearchHitDTO();
+        hit.setKind(doc.get("kind"));
+        hit.setMessageId(storedLong(doc, "messageId"));
+        hit.setGroupId(storedLong(doc, "groupId"));
+        hit.setSenderId(storedLong(doc, "senderId"));
+        hit.setReceiverId(storedLong(doc, "receiverId"));
+        hit.setContent(doc.get("content"));
+        Long millis = storedLong(doc, "timestamp");
+        if (millis != null) {
+            hit.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+        }
+        hit.setScore(score);
+        return hit;
+    }
+
+    private static Long storedLong(Document doc, String field) {
+        var value = doc.getField(field);
+        return value == null ? null : value.numericValue().longValue();
+    }
+
+    private Document directDocument(Long messageId, Long senderId, Long receiverId, String content, LocalDateTime timestamp) {
+        Document doc = baseDocument("d" + messageId, KIND_DIRECT, messageId, senderId, content, timestamp);
+        doc.add(new StringField("participant", senderId.toString(), Field.Store.NO));
+        doc.add(new StringField("participant", receiverId.toString(), Field.Store.NO));
+        doc.add(new StoredField("receiverId", receiverId));
+        return doc;
+    }
+
+    private Document groupDocument(Long messageId, Long groupId, Long senderId, String content, LocalDateTime timestamp) {
+        Document doc = baseDocument("g" + messageId, KIND_GROUP, messageId, senderId, content, timestamp);
+        doc.add(new StringField("group", groupId.toString(), Field.Store.NO));
+        doc.add(new StoredField("groupId", groupId));
+        return doc;
+    }
+
+    private Document baseDocument(String uid, String kind, Long messageId, Long senderId, String content, LocalDateTime timestamp) {
+        long millis = timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+        Document doc = new Document();
+        doc.add(new StringField("uid", uid, Field.Store.NO));
+        doc.add(new StringField("kind", kind, Field.Store.YES));
+        doc.add(new StringField("sender", senderId.toString(), Field.Store.NO));
+        doc.add(new StoredField("messageId", messageId));
+        doc.add(new StoredField("senderId", senderId));
+        doc.add(new TextField("content", content == null ? "" : content, Field.Store.YES));
+        doc.add(new StoredField("timestamp", millis));
+        doc.add(new NumericDocValuesField("ts", millis));
+        return doc;
+    }
+
+    private void upsert(Document doc) {
+        try {
+            // Keyed by uid, so re-indexing the same message (retries, backfill) is idempotent
+            writer.updateDocument(new Term("uid", doc.get("uid")), doc);
+            long messageId = doc.getField("messageId").numericValue().longValue();
+            (KIND_DIRECT.equals(doc.get("kind")) ? directHighWater : groupHighWater).accumulateAndGet(messageId, Math::max);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to index message " + doc.get("uid") + ": " + e.getMessage());
+        }
+    }
+
+    private void catchUp(long afterDirectId, long afterGroupId) {
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        try {
+            streaming.query("SELECT id, sender_id, receiver_id, content, timestamp FROM messages WHERE id > ?", rs -> {
+                upsert(directDocument(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getString(4),
+                        rs.getObject(5, LocalDateTime.class)));
+            }, afterDirectId);
+            streaming.query("SELECT id, group_id, sender_id, content, timestamp FROM group_messages WHERE id > ?", rs -> {
+                upsert(groupDocument(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getString(4),
+                        rs.getObject(5, LocalDateTime.class)));
+            }, afterGroupId);
+            catchingUp = false;
+            commit();
+            System.out.println("INFO: Search index caught up from message " + afterDirectId + " / group message "
+                    + afterGroupId + "; " + writer.getDocStats().numDocs + " messages indexed");
+        } catch (Exception e) {
+            // Resume points were not advanced, so the next start retries from the same place
+            System.err.println("ERROR: Search index catch-up failed: " + e.getMessage());
+        }
+    }
+
+    private void refresh() {
+        indexRemote();
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to refresh search index: " + e.getMessage());
+        }
+    }
+
+    private void indexRemote() {
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            for (List<Long> ids = drain(remoteDirect); !ids.isEmpty(); ids = drain(remoteDirect)) {
+                jdbc.query("SELECT id, sender_id, receiver_id, content, timestamp FROM messages WHERE id IN ("
+                        + placeholders(ids.size()) + ")", rs -> {
+                    upsert(directDocument(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getString(4),
+                            rs.getObject(5, LocalDateTime.class)));
+                }, ids.toArray());
+            }
+            for (List<Long> ids = drain(remoteGroup); !ids.isEmpty(); ids = drain(remoteGroup)) {
+                jdbc.query("SELECT id, group_id, sender_id, content, timestamp FROM group_messages WHERE id IN ("
+                        + placeholders(ids.size()) + ")", rs -> {
+                    upsert(groupDocument(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getString(4),
+                            rs.getObject(5, LocalDateTime.class)));
+                }, ids.toArray());
+            }
+        } catch (Exception e) {
+            System.err.println("ERROR: Failed to index messages from peer nodes: " + e.getMessage());
+        }
+    }
+
+    private static List<Long> drain(ConcurrentLinkedQueue<Long> queue) {
+        List<Long> ids = new ArrayList<>();
+        Long id;
+        while (ids.size() < 500 && (id = queue.poll()) != null) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    // Rows do not reach the database in id order (concurrent transactions, pipeline batches), so a
+    // restart resumes from the high-water mark of the commit before last rather than the last one
+    private synchronized void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                long direct = directHighWater.get();
+                long group = groupHighWater.get();
+                Map<String, String> data = new HashMap<>();
+                data.put(RESUME_DIRECT, Long.toString(resumeDirect));
+                data.put(RESUME_GROUP, Long.toString(resumeGroup));
+                writer.setLiveCommitData(data.entrySet(), false);
+                writer.commit();
+                if (!catchingUp) {
+                    resumeDirect = lastCommittedDirect;
+                    resumeGroup = lastCommittedGroup;
+                    lastCommittedDirect = direct;
+                    lastCommittedGroup = group;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to commit search index: " + e.getMessage());
+        }
+    }
+}
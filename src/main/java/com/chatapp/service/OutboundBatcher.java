@@ -0,0 +1,214 @@
+package com.chatapp.service;
+
+import com.chatapp.config.WebSocketProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Opt-in outbound batching (app.websocket.batching.enabled). A session opts in by subscribing to
+// /user/queue/batch; from then on its chat messages (/user/queue/messages, /topic/group/*) are held for
+// up to window-ms and sent as one MESSAGE frame on that subscription whose body is
+// [{"destination":..., "subscription":..., "body":<original JSON>}, ...]. A batch is sent early once it
+// reaches max-messages or max-bytes. Typing, presence and non-JSON frames are never held.
+@Service
+public class OutboundBatcher implements ChannelInterceptor {
+    public static final String BATCH_DESTINATION = "/user/queue/batch";
+    private static final String BATCHED_HEADER = "chatBatched";
+    private static final byte[] DESTINATION_FIELD = "{\"destination\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUBSCRIPTION_FIELD = ",\"subscription\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BODY_FIELD = ",\"body\":".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private WebSocketProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private record Entry(String destination, String subscriptionId, byte[] body) {
+    }
+
+    private static class SessionBatch {
+        final String batchSubscriptionId;
+        final List<Entry> entries = new ArrayList<>();
+        int bytes;
+        MessageChannel channel;
+
+        SessionBatch(String batchSubscriptionId) {
+            this.batchSubscriptionId = batchSubscriptionId;
+        }
+    }
+
+    private final ConcurrentHashMap<String, SessionBatch> sessions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+    private Counter frames;
+    private DistributionSummary batchSize;
+
+    @PostConstruct
+    public void start() {
+        frames = Counter.builder("chat.ws.batch.frames").register(meterRegistry);
+        batchSize = DistributionSummary.builder("chat.ws.batch.size").register(meterRegistry);
+        Gauge.builder("chat.ws.batch.sessions", sessions, Map::size).register(meterRegistry);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-batch-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (properties.getBatching().isEnabled() && BATCH_DESTINATION.equals(accessor.getDestination())
+                && accessor.getSessionId() != null && accessor.getSubscriptionId() != null) {
+            sessions.put(accessor.getSessionId(), new SessionBatch(accessor.getSubscriptionId()));
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        SessionBatch batch = accessor.getSessionId() != null ? sessions.get(accessor.getSessionId()) : null;
+        if (batch != null && batch.batchSubscriptionId.equals(accessor.getSubscriptionId())) {
+            sessions.remove(accessor.getSessionId());
+            flush(accessor.getSessionId(), batch);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    // Outbound channel
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (sessions.isEmpty()) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String sessionId = accessor.getSessionId();
+        SessionBatch batch = sessionId != null ? sessions.get(sessionId) : null;
+        if (batch == null || accessor.getMessageType() != SimpMessageType.MESSAGE
+                || accessor.getHeader(BATCHED_HEADER) != null
+                || !(message.getPayload() instanceof byte[] body)
+                || accessor.getContentType() == null
+                || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(accessor.getContentType())) {
+            return message;
+        }
+        String destination = (String) accessor.getHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION);
+        if (destination == null) {
+            destination = accessor.getDestination();
+        }
+        if (destination == null || !isBatchable(destination)) {
+            return message;
+        }
+
+        WebSocketProperties.Batching limits = properties.getBatching();
+        boolean first;
+        boolean full;
+        synchronized (batch) {
+            batch.channel = channel;
+            first = batch.entries.isEmpty();
+            batch.entries.add(new Entry(destination, accessor.getSubscriptionId(), body));
+            batch.bytes += body.length;
+            full = batch.entries.size() >= limits.getMaxMessages() || batch.bytes >= limits.getMaxBytes();
+        }
+        if (full) {
+            flush(sessionId, batch);
+        } else if (first) {
+            flusher.schedule(() -> flush(sessionId, batch), limits.getWindowMs(), TimeUnit.MILLISECONDS);
+        }
+        return null;
+    }
+
+    private static boolean isBatchable(String destination) {
+        return destination.startsWith("/user/queue/messages") || destination.startsWith("/topic/group/");
+    }
+
+    // Sends under the session's lock, so a timer flush and a size-triggered flush cannot hand their
+    // batches to the channel in the opposite order to the one they were formed in
+    private void flush(String sessionId, SessionBatch batch) {
+        synchronized (batch) {
+            if (batch.entries.isEmpty()) {
+                return;
+            }
+            List<Entry> entries = new ArrayList<>(batch.entries);
+            batch.entries.clear();
+            batch.bytes = 0;
+            try {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                accessor.setSessionId(sessionId);
+                accessor.setSubscriptionId(batch.batchSubscriptionId);
+                accessor.setDestination(BATCH_DESTINATION);
+                accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+                accessor.setHeader(BATCHED_HEADER, Boolean.TRUE);
+                batch.channel.send(MessageBuilder.createMessage(encode(entries), accessor.getMessageHeaders()));
+                frames.increment();
+                batchSize.record(entries.size());
+            } catch (Exception e) {
+                System.err.println("ERROR: Failed to send batch to session " + sessionId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Bodies are already JSON, so they are spliced in as-is rather than parsed and re-serialized
+    private byte[] encode(List<Entry> entries) throws JsonProcessingException {
+        int size = 2;
+        for (Entry entry : entries) {
+            size += entry.body().length + 64;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write('[');
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(DESTINATION_FIELD);
+            out.writeBytes(objectMapper.writeValueAsBytes(entry.destination()));
+            out.writeBytes(SUBSCRIPTION_FIELD);
+            out.writeBytes(objectMapper.writeValueAsBytes(entry.subscriptionId()));
+            out.writeBytes(BODY_FIELD);
+            out.writeBytes(entry.body());
+            out.write('}');
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+}
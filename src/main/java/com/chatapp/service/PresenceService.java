@@ -0,0 +1,176 @@
+package com.chatapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Presence derived from WebSocket sessions. UserLocationRegistry counts sessions per user (so a second
+// tab closing does not mark anyone offline) and reports the first-connect / last-disconnect transitions.
+// Those land in a latest-state-wins map that is flushed on a timer: one batched UPDATE for online/last_seen,
+// then one push per changed user to each of their friends that is connected. A user who flaps within a
+// flush interval costs nothing. In a cluster a user's state also depends on the other nodes, so remote
+// transitions queue the user too; the UPDATE only matches rows whose flag differs, which makes every node
+// agree on the stored state and lets exactly one of them push each change.
+@Service
+public class PresenceService implements UserLocationRegistry.LocalPresenceListener,
+        UserLocationRegistry.RemotePresenceListener {
+    private static final String UPDATE_SQL = "UPDATE users SET online = ?, last_seen = ? WHERE id = ? AND online <> ?";
+
+    @Autowired
+    private UserLocationRegistry locationRegistry;
+
+    @Autowired
+    private FriendshipGraph friendshipGraph;
+
+    @Autowired
+    private MessageBus messageBus;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.presence.flush-interval-ms:2000}")
+    private long flushIntervalMs;
+
+    // Single node: clear online flags left behind by a crash. Unset, it is on unless app.cluster.bus=tcp, where
+    // the flags also belong to users connected to the other nodes; set it false whenever nodes share the database.
+    @Value("${app.presence.reset-on-startup:#{null}}")
+    private Boolean resetOnStartup;
+
+    @Value("${app.cluster.bus:local}")
+    private String clusterBus;
+
+    private final ConcurrentHashMap<Long, Boolean> pending = new ConcurrentHashMap<>();
+    // Set on shutdown: this node's sessions no longer count
+    private volatile boolean stopping;
+    private ScheduledExecutorService flusher;
+    private Counter rowsWritten;
+    private Counter pushes;
+
+    @PostConstruct
+    public void start() {
+        rowsWritten = Counter.builder("chat.presence.rows_written").register(meterRegistry);
+        pushes = Counter.builder("chat.presence.pushes").register(meterRegistry);
+        Gauge.builder("chat.presence.pending", pending, Map::size).register(meterRegistry);
+
+        locationRegistry.addListener(this);
+        locationRegistry.addRemoteListener(this);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "presence-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        // Sessions on this node are gone with it
+        stopping = true;
+        locationRegistry.localUsers().forEach(userId -> pending.put(userId, false));
+        flushSafely();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resetStaleFlags() {
+        boolean reset = resetOnStartup != null ? resetOnStartup : !"tcp".equalsIgnoreCase(clusterBus);
+        if (reset) {
+            int cleared = jdbcTemplate.update("UPDATE users SET online = false WHERE online = true");
+            if (cleared > 0) {
+                System.out.println("INFO: Cleared stale online flag for " + cleared + " users");
+            }
+        }
+    }
+
+    @Override
+    public void onLocalPresenceChanged(Long userId, boolean online) {
+        pending.put(userId, online);
+    }
+
+    // Re-evaluated at the next flush; a pending local change is kept
+    @Override
+    public void onRemotePresenceChanged(Long userId) {
+        pending.putIfAbsent(userId, false);
+    }
+
+    public boolean isOnline(Long userId) {
+        return locationRegistry.isLocal(userId) || locationRegistry.remoteNodesOf(userId) != 0;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("ERROR: Presence flush failed: " + e.getMessage());
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, Boolean> changes = new HashMap<>();
+        for (Long userId : pending.keySet()) {
+            Boolean online = pending.remove(userId);
+            if (online == null) {
+                continue;
+            }
+            // Still connected on another node: not offline
+            boolean local = !stopping && (online || locationRegistry.isLocal(userId));
+            changes.put(userId, local || locationRegistry.remoteNodesOf(userId) != 0);
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> userIds = new ArrayList<>(changes.keySet());
+        List<Object[]> rows = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            boolean online = changes.get(userId);
+            rows.add(new Object[] {online, now, userId, online});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, rows);
+
+        for (int i = 0; i < userIds.size(); i++) {
+            // Zero rows: the stored flag already matched, so whichever node changed it has pushed
+            if (counts[i] == 0) {
+                continue;
+            }
+            rowsWritten.increment();
+            Long userId = userIds.get(i);
+            boolean online = changes.get(userId);
+            Map<String, Object> update = Map.of("userId", userId, "online", online, "lastSeen", now.toLocalDateTime());
+            List<Long> recipients = new ArrayList<>();
+            for (long friendId : friendshipGraph.friendsOf(userId)) {
+                if (isOnline(friendId)) {
+                    recipients.add(friendId);
+                }
+            }
+            messageBus.sendToUsers(recipients, "/queue/presence", update);
+            pushes.increment(recipients.size());
+        }
+    }
+}
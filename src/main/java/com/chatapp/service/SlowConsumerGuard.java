@@ -0,0 +1,212 @@
+package com.chatapp.service;
+
+import com.chatapp.config.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps one stalled client from holding up everyone else's outbound delivery. Each session counts
+// MESSAGE frames handed to it on the outbound channel and frames actually written to its socket; the
+// difference is what sits in Spring's per-session send buffer. Above the threshold, typing/presence
+// frames for that session are dropped, or the session is closed when the policy is "disconnect".
+// Spring's own byte/time limits (app.websocket.transport.*) remain the hard stop behind this.
+@Service
+public class SlowConsumerGuard implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+    private static final byte[] MESSAGE_COMMAND = "MESSAGE\n".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private WebSocketProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, SessionStats> sessions = new ConcurrentHashMap<>();
+    private Counter dropped;
+    private Counter disconnected;
+
+    private static class SessionStats {
+        final WebSocketSession session;
+        final AtomicLong queued = new AtomicLong();
+        final AtomicLong written = new AtomicLong();
+
+        SessionStats(WebSocketSession session) {
+            this.session = session;
+        }
+
+        long pending() {
+            return Math.max(0, queued.get() - written.get());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        dropped = Counter.builder("chat.ws.slow_consumer").tag("action", "dropped").register(meterRegistry);
+        disconnected = Counter.builder("chat.ws.slow_consumer").tag("action", "disconnected").register(meterRegistry);
+        Gauge.builder("chat.ws.sessions", sessions, ConcurrentHashMap::size).register(meterRegistry);
+        Gauge.builder("chat.ws.send_buffer.pending", this, SlowConsumerGuard::totalPending).register(meterRegistry);
+        Gauge.builder("chat.ws.send_buffer.max_pending", this, SlowConsumerGuard::maxPending).register(meterRegistry);
+    }
+
+    // The channel executors are created by the broker configuration, which depends on this bean
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerExecutorGauges(ApplicationReadyEvent event) {
+        registerExecutorGauges("inbound", event.getApplicationContext()
+                .getBean("clientInboundChannelExecutor", ThreadPoolTaskExecutor.class));
+        registerExecutorGauges("outbound", event.getApplicationContext()
+                .getBean("clientOutboundChannelExecutor", ThreadPoolTaskExecutor.class));
+    }
+
+    private void registerExecutorGauges(String channel, ThreadPoolTaskExecutor executor) {
+        Gauge.builder("chat.ws.channel.queue", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .tag("channel", channel).register(meterRegistry);
+        Gauge.builder("chat.ws.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("channel", channel).register(meterRegistry);
+        Gauge.builder("chat.ws.channel.pool", executor, ThreadPoolTaskExecutor::getPoolSize)
+                .tag("channel", channel).register(meterRegistry);
+    }
+
+    // Outbound channel: runs on the sending thread before the frame is queued for the session
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || accessor.getSessionId() == null) {
+            return message;
+        }
+        SessionStats stats = sessions.get(accessor.getSessionId());
+        if (stats == null) {
+            return message;
+        }
+        if (stats.pending() >= properties.getSlowConsumer().getMaxPendingMessages()) {
+            if ("disconnect".equalsIgnoreCase(properties.getSlowConsumer().getPolicy())) {
+                disconnect(stats);
+                return null;
+            }
+            if (!isCritical(accessor)) {
+                dropped.increment();
+                return null;
+            }
+        }
+        stats.queued.incrementAndGet();
+        return message;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionStats stats = new SessionStats(session);
+                sessions.put(session.getId(), stats);
+                super.afterConnectionEstablished(new CountingSession(session, stats));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public long totalPending() {
+        long total = 0;
+        for (SessionStats stats : sessions.values()) {
+            total += stats.pending();
+        }
+        return total;
+    }
+
+    public long maxPending() {
+        long max = 0;
+        for (SessionStats stats : sessions.values()) {
+            max = Math.max(max, stats.pending());
+        }
+        return max;
+    }
+
+    private boolean isCritical(SimpMessageHeaderAccessor accessor) {
+        String destination = (String) accessor.getHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION);
+        if (destination == null) {
+            destination = accessor.getDestination();
+        }
+        return destination == null
+                || !(destination.startsWith("/user/queue/typing") || destination.startsWith("/user/queue/presence"));
+    }
+
+    private void disconnect(SessionStats stats) {
+        if (sessions.remove(stats.session.getId()) == null) {
+            return;
+        }
+        disconnected.increment();
+        System.out.println("INFO: Closing slow WebSocket session " + stats.session.getId()
+                + " with " + stats.pending() + " pending messages");
+        try {
+            stats.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to close slow session " + stats.session.getId() + ": " + e.getMessage());
+        }
+    }
+
+    // Sits beneath Spring's buffering decorator, so sendMessage here is the actual socket write
+    private static class CountingSession extends WebSocketSessionDecorator {
+        private final SessionStats stats;
+
+        CountingSession(WebSocketSession session, SessionStats stats) {
+            super(session);
+            this.stats = stats;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            super.sendMessage(message);
+            if (isMessageFrame(message)) {
+                stats.written.incrementAndGet();
+            }
+        }
+
+        private static boolean isMessageFrame(WebSocketMessage<?> message) {
+            if (message instanceof TextMessage text) {
+                return text.getPayload().startsWith("MESSAGE\n");
+            }
+            if (message instanceof BinaryMessage binary) {
+                ByteBuffer payload = binary.getPayload();
+                if (payload.remaining() < MESSAGE_COMMAND.length) {
+                    return false;
+                }
+                for (int i = 0; i < MESSAGE_COMMAND.length; i++) {
+                    if (payload.get(payload.position() + i) != MESSAGE_COMMAND[i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
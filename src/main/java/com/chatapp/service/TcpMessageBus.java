@@ -0,0 +1,566 @@
+package com.chatapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Node-to-node bus over plain TCP. Every node listens on app.cluster.port and keeps one outbound link per
+// peer in app.cluster.peers ("nodeId@host:port,..."). Nodes announce which users are connected locally
+// (a snapshot on connect and periodically, plus online/offline deltas), so a delivery is forwarded only
+// to the nodes that hold the recipient's sessions instead of being broadcast. Payloads are serialised
+// to JSON once per delivery and handed to the receiving node's broker as-is.
+// Every link starts with a mutual HMAC challenge over app.cluster.secret; only configured peer ids are
+// accepted, and a peer may only report locations for itself. The listener binds to app.cluster.bind-address
+// (loopback by default), which should be a private interface: frames after the handshake are not encrypted.
+// Cache and index invalidations (ClusterInvalidations) are broadcast to every peer and queue up while a
+// link is down; chat.cluster.frames.dropped counts any lost to a full queue.
+@Service
+@ConditionalOnProperty(name = "app.cluster.bus", havingValue = "tcp")
+public class TcpMessageBus implements MessageBus, UserLocationRegistry.LocalPresenceListener {
+    private static final byte FRAME_SNAPSHOT = 1;
+    private static final byte FRAME_LOCATION = 2;
+    private static final byte FRAME_USER = 3;
+    private static final byte FRAME_TOPIC = 4;
+    private static final byte FRAME_INVALIDATE = 5;
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final long MAX_BACKOFF_MS = 10_000;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    private static final int NONCE_BYTES = 32;
+    private static final int MAC_BYTES = 32;
+    // Node ids are bits in UserLocationRegistry's per-user int mask
+    private static final int MAX_NODE_ID = 15;
+
+    @Autowired
+    private FanOutEncoder fanOutEncoder;
+
+    @Autowired
+    private UserLocationRegistry locationRegistry;
+
+    @Autowired
+    private GroupMembershipIndex membershipIndex;
+
+    @Autowired
+    private ClusterInvalidations invalidations;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.node-id:0}")
+    private int nodeId;
+
+    @Value("${app.cluster.port:9701}")
+    private int port;
+
+    @Value("${app.cluster.bind-address:127.0.0.1}")
+    private String bindAddress;
+
+    @Value("${app.cluster.peers:}")
+    private String peersSpec;
+
+    @Value("${app.cluster.secret:}")
+    private String secret;
+
+    @Value("${app.cluster.send-queue-capacity:10000}")
+    private int sendQueueCapacity;
+
+    @Value("${app.cluster.resync-interval-seconds:30}")
+    private long resyncIntervalSeconds;
+
+    private final Map<Integer, PeerLink> peers = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final List<Socket> inbound = new ArrayList<>();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    private Counter framesOut;
+    private Counter framesIn;
+    private Counter framesDropped;
+
+    @PostConstruct
+    public void start() throws IOException {
+        framesOut = Counter.builder("chat.cluster.frames").tag("direction", "out").register(meterRegistry);
+        framesIn = Counter.builder("chat.cluster.frames").tag("direction", "in").register(meterRegistry);
+        framesDropped = Counter.builder("chat.cluster.frames.dropped").register(meterRegistry);
+
+        if (secret.length() < 16) {
+            throw new IllegalStateException("app.cluster.secret must be set (at least 16 characters) when app.cluster.bus=tcp");
+        }
+
+        requireNodeId(nodeId, "app.node-id");
+        for (String spec : peersSpec.split(",")) {
+            if (spec.isBlank()) {
+                continue;
+            }
+            String entry = spec.trim();
+            int at = entry.indexOf('@');
+            int colon = entry.lastIndexOf(':');
+            if (at <= 0 || colon <= at + 1 || colon == entry.length() - 1) {
+                throw new IllegalStateException("Malformed app.cluster.peers entry '" + entry + "', expected nodeId@host:port");
+            }
+            int peerId;
+            int peerPort;
+            try {
+                peerId = Integer.parseInt(entry.substring(0, at));
+                peerPort = Integer.parseInt(entry.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Malformed app.cluster.peers entry '" + entry + "', expected nodeId@host:port");
+            }
+            requireNodeId(peerId, "Node id in app.cluster.peers entry '" + entry + "'");
+            if (peerId == nodeId) {
+                continue;
+            }
+            PeerLink link = new PeerLink(peerId, entry.substring(at + 1, colon), peerPort);
+            peers.put(peerId, link);
+        }
+
+        running = true;
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(bindAddress));
+        Thread acceptor = new Thread(this::acceptLoop, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        peers.values().forEach(PeerLink::start);
+        locationRegistry.addListener(this);
+        invalidations.setForwarder(this::broadcastInvalidation);
+        System.out.println("INFO: Cluster bus listening on " + bindAddress + ":" + port + " as node " + nodeId
+                + " with " + peers.size() + " peers");
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        invalidations.setForwarder(null);
+        peers.values().forEach(PeerLink::close);
+        closeQuietly(serverSocket);
+        synchronized (inbound) {
+            inbound.forEach(TcpMessageBus::closeQuietly);
+        }
+    }
+
+    @Override
+    public void sendToUser(Long userId, String destination, Object payload) {
+        sendToUser(userId, destination, fanOutEncoder.encode(payload));
+    }
+
+    @Override
+    public void sendToUsers(Collection<Long> userIds, String destination, Object payload) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        EncodedPayload encoded = fanOutEncoder.encode(payload);
+        for (Long userId : userIds) {
+            sendToUser(userId, destination, encoded);
+        }
+    }
+
+    private void sendToUser(Long userId, String destination, EncodedPayload payload) {
+        if (locationRegistry.isLocal(userId)) {
+            fanOutEncoder.sendToUser(userId, destination, payload);
+        }
+        int nodes = locationRegistry.remoteNodesOf(userId);
+        if (nodes != 0) {
+            forward(nodes, encode(FRAME_USER, out -> {
+                out.writeLong(userId);
+                out.writeUTF(destination);
+                writePayload(out, payload);
+            }));
+        }
+    }
+
+    @Override
+    public void sendToGroup(Long groupId, Object payload) {
+        String topic = "/topic/group/" + groupId;
+        EncodedPayload encoded = fanOutEncoder.encode(payload);
+        fanOutEncoder.send(topic, encoded);
+        int nodes = 0;
+        for (long memberId : membershipIndex.membersOf(groupId)) {
+            nodes |= locationRegistry.remoteNodesOf(memberId);
+        }
+        if (nodes != 0) {
+            forward(nodes, encode(FRAME_TOPIC, out -> {
+                out.writeUTF(topic);
+                writePayload(out, encoded);
+            }));
+        }
+    }
+
+    @Override
+    public void onLocalPresenceChanged(Long userId, boolean online) {
+        byte[] frame = encode(FRAME_LOCATION, out -> {
+            out.writeInt(nodeId);
+            out.writeLong(userId);
+            out.writeBoolean(online);
+        });
+        peers.values().forEach(link -> link.enqueue(frame));
+    }
+
+    // Cache and index changes go to every peer, whether or not it has sessions of the users involved
+    private void broadcastInvalidation(ClusterInvalidations.Invalidation invalidation) {
+        byte[] frame = encode(FRAME_INVALIDATE, out -> {
+            out.writeByte(invalidation.kind().ordinal());
+            out.writeUTF(invalidation.key());
+            out.writeInt(invalidation.ids().length);
+            for (long id : invalidation.ids()) {
+                out.writeLong(id);
+            }
+        });
+        peers.values().forEach(link -> link.enqueue(frame));
+    }
+
+    private void forward(int nodeMask, byte[] frame) {
+        for (PeerLink link : peers.values()) {
+            if ((nodeMask & (1 << link.peerId)) != 0) {
+                link.enqueue(frame);
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+                synchronized (inbound) {
+                    inbound.add(socket);
+                }
+                Thread reader = new Thread(() -> readLoop(socket), "cluster-in-" + socket.getRemoteSocketAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("ERROR: Cluster bus accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        int peerId = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            peerId = acceptHandshake(socket, in);
+            while (running) {
+                byte type = in.readByte();
+                framesIn.increment();
+                switch (type) {
+                    case FRAME_SNAPSHOT: {
+                        requireSender(peerId, in.readInt());
+                        int count = in.readInt();
+                        List<Long> userIds = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            userIds.add(in.readLong());
+                        }
+                        locationRegistry.replaceNode(peerId, userIds);
+                        break;
+                    }
+                    case FRAME_LOCATION:
+                        requireSender(peerId, in.readInt());
+                        locationRegistry.setRemote(peerId, in.readLong(), in.readBoolean());
+                        break;
+                    case FRAME_USER: {
+                        long userId = in.readLong();
+                        String destination = in.readUTF();
+                        deliverLocally("/user/" + userId + destination, readPayload(in));
+                        break;
+                    }
+                    case FRAME_TOPIC: {
+                        String destination = in.readUTF();
+                        deliverLocally(destination, readPayload(in));
+                        break;
+                    }
+                    case FRAME_INVALIDATE: {
+                        ClusterInvalidations.Kind[] kinds = ClusterInvalidations.Kind.values();
+                        int kind = in.readUnsignedByte();
+                        String key = in.readUTF();
+                        long[] ids = new long[in.readInt()];
+                        for (int i = 0; i < ids.length; i++) {
+                            ids[i] = in.readLong();
+                        }
+                        if (kind < kinds.length) {
+                            invalidations.applyRemote(new ClusterInvalidations.Invalidation(kinds[kind], key, ids));
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown cluster frame type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // peer closed the link
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("ERROR: Cluster link from node " + peerId + " failed: " + e.getMessage());
+            }
+        } finally {
+            synchronized (inbound) {
+                inbound.remove(socket);
+            }
+            closeQuietly(socket);
+            // Its sessions are unreachable until it reconnects and sends a fresh snapshot
+            if (peerId >= 0 && peers.containsKey(peerId)) {
+                locationRegistry.clearNode(peerId);
+            }
+        }
+    }
+
+    private static void requireNodeId(int id, String what) {
+        if (id < 0 || id > MAX_NODE_ID) {
+            throw new IllegalStateException(what + " must be between 0 and " + MAX_NODE_ID + ", was " + id);
+        }
+    }
+
+    private static void requireSender(int peerId, int claimedNodeId) throws IOException {
+        if (claimedNodeId != peerId) {
+            throw new IOException("Node " + peerId + " sent a frame on behalf of node " + claimedNodeId);
+        }
+    }
+
+    // Listener side: send a challenge, verify the peer's answer (which also names the peer), then prove
+    // knowledge of the secret to the peer in turn
+    private int acceptHandshake(Socket socket, DataInputStream in) throws IOException {
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        byte[] challenge = nonce();
+        out.write(challenge);
+        out.flush();
+
+        int peerId = in.readInt();
+        byte[] peerChallenge = readBytes(in, NONCE_BYTES);
+        byte[] answer = readBytes(in, MAC_BYTES);
+        if (!peers.containsKey(peerId)) {
+            throw new IOException("Rejected connection from unconfigured node " + peerId);
+        }
+        if (!MessageDigest.isEqual(answer, mac("client", peerId, challenge))) {
+            throw new IOException("Rejected connection claiming to be node " + peerId + ": bad secret");
+        }
+        out.writeInt(nodeId);
+        out.write(mac("server", nodeId, peerChallenge));
+        out.flush();
+        socket.setSoTimeout(0);
+        return peerId;
+    }
+
+    // Connecting side: answer the listener's challenge and check that the listener is the expected peer
+    private void connectHandshake(Socket socket, int expectedPeerId) throws IOException {
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        byte[] challenge = readBytes(in, NONCE_BYTES);
+        byte[] ownChallenge = nonce();
+        out.writeInt(nodeId);
+        out.write(ownChallenge);
+        out.write(mac("client", nodeId, challenge));
+        out.flush();
+
+        int peerId = in.readInt();
+        byte[] answer = readBytes(in, MAC_BYTES);
+        if (peerId != expectedPeerId || !MessageDigest.isEqual(answer, mac("server", peerId, ownChallenge))) {
+            throw new IOException("Peer at " + socket.getRemoteSocketAddress() + " failed authentication");
+        }
+        socket.setSoTimeout(0);
+    }
+
+    private byte[] nonce() {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        return nonce;
+    }
+
+    private byte[] mac(String role, int senderId, byte[] challenge) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(role.getBytes(StandardCharsets.UTF_8));
+            mac.update(ByteBuffer.allocate(4).putInt(senderId).array());
+            return mac.doFinal(challenge);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    // The payload is already JSON; send it without another round through the message converters
+    private void deliverLocally(String destination, byte[] json) {
+        fanOutEncoder.send(destination, fanOutEncoder.wrap(json));
+    }
+
+    private static void writePayload(DataOutputStream out, EncodedPayload payload) throws IOException {
+        byte[] json = payload.json();
+        out.writeInt(json.length);
+        out.write(json);
+    }
+
+    private static byte[] readPayload(DataInputStream in) throws IOException {
+        byte[] json = new byte[in.readInt()];
+        in.readFully(json);
+        return json;
+    }
+
+    private byte[] snapshotFrame() {
+        Collection<Long> userIds = locationRegistry.localUsers();
+        return encode(FRAME_SNAPSHOT, out -> {
+            out.writeInt(nodeId);
+            out.writeInt(userIds.size());
+            for (Long userId : userIds) {
+                out.writeLong(userId);
+            }
+        });
+    }
+
+    private interface FrameWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(byte type, FrameWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            writer.write(out);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode cluster frame", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Outbound connection to one peer: a bounded send queue drained by a dedicated thread that reconnects
+    // with backoff and always opens (and periodically refreshes) with a snapshot of local users.
+    private class PeerLink {
+        private final int peerId;
+        private final String host;
+        private final int peerPort;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(sendQueueCapacity);
+        private volatile Socket socket;
+        private Thread thread;
+
+        PeerLink(int peerId, String host, int peerPort) {
+            this.peerId = peerId;
+            this.host = host;
+            this.peerPort = peerPort;
+        }
+
+        void start() {
+            thread = new Thread(this::run, "cluster-link-" + peerId);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void enqueue(byte[] frame) {
+            if (!queue.offer(frame)) {
+                framesDropped.increment();
+            }
+        }
+
+        void close() {
+            closeQuietly(socket);
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        private void run() {
+            long backoff = 500;
+            while (running) {
+                try {
+                    Socket s = new Socket();
+                    s.connect(new InetSocketAddress(host, peerPort), CONNECT_TIMEOUT_MS);
+                    s.setTcpNoDelay(true);
+                    s.setKeepAlive(true);
+                    socket = s;
+                    connectHandshake(s, peerId);
+                    backoff = 500;
+                    pump(new DataOutputStream(new BufferedOutputStream(s.getOutputStream())));
+                } catch (IOException e) {
+                    if (running) {
+                        System.err.println("ERROR: Cluster link to node " + peerId + " (" + host + ":" + peerPort
+                                + ") unavailable: " + e.getMessage());
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    closeQuietly(socket);
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+
+        private void pump(DataOutputStream out) throws IOException, InterruptedException {
+            long resyncNanos = TimeUnit.SECONDS.toNanos(resyncIntervalSeconds);
+            out.write(snapshotFrame());
+            out.flush();
+            framesOut.increment();
+            long lastSnapshot = System.nanoTime();
+            List<byte[]> batch = new ArrayList<>();
+            while (running) {
+                byte[] first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, 255);
+                    for (byte[] frame : batch) {
+                        out.write(frame);
+                    }
+                    framesOut.increment(batch.size());
+                    batch.clear();
+                }
+                if (System.nanoTime() - lastSnapshot >= resyncNanos) {
+                    // Heals any online/offline deltas that raced or were dropped
+                    out.write(snapshotFrame());
+                    framesOut.increment();
+                    lastSnapshot = System.nanoTime();
+                }
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.chatapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Connections, frames and bytes per transport: "native" for the raw WebSocket endpoint, otherwise the
+// SockJS transport the client ended up on (websocket, xhr_streaming, xhr, eventsource, ...). Shows how
+// much traffic still rides the HTTP fallbacks.
+@Service
+public class TransportMetrics implements WebSocketHandlerDecoratorFactory {
+    private static final String NATIVE = "native";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, Meters> metersByTransport = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Meters> metersBySession = new ConcurrentHashMap<>();
+
+    private static class Meters {
+        final AtomicInteger active = new AtomicInteger();
+        final Counter connections;
+        final Counter framesIn;
+        final Counter framesOut;
+        final Counter bytesIn;
+        final Counter bytesOut;
+
+        Meters(MeterRegistry registry, String transport) {
+            connections = Counter.builder("chat.ws.transport.connections").tag("transport", transport).register(registry);
+            framesIn = Counter.builder("chat.ws.transport.frames").tag("transport", transport).tag("direction", "in").register(registry);
+            framesOut = Counter.builder("chat.ws.transport.frames").tag("transport", transport).tag("direction", "out").register(registry);
+            bytesIn = Counter.builder("chat.ws.transport.bytes").tag("transport", transport).tag("direction", "in").register(registry);
+            bytesOut = Counter.builder("chat.ws.transport.bytes").tag("transport", transport).tag("direction", "out").register(registry);
+            Gauge.builder("chat.ws.transport.active", active, AtomicInteger::get).tag("transport", transport).register(registry);
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                Meters meters = metersByTransport.computeIfAbsent(transportOf(session), t -> new Meters(meterRegistry, t));
+                metersBySession.put(session.getId(), meters);
+                meters.connections.increment();
+                meters.active.incrementAndGet();
+                super.afterConnectionEstablished(new MeteredSession(session, meters));
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                Meters meters = metersBySession.get(session.getId());
+                if (meters != null) {
+                    meters.framesIn.increment();
+                    meters.bytesIn.increment(message.getPayloadLength());
+                }
+                super.handleMessage(session, message);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                Meters meters = metersBySession.remove(session.getId());
+                if (meters != null) {
+                    meters.active.decrementAndGet();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    // SockJS session URLs end in the transport: /ws/{server}/{session}/{transport}
+    private static String transportOf(WebSocketSession session) {
+        if (!(session instanceof SockJsSession)) {
+            return NATIVE;
+        }
+        URI uri = session.getUri();
+        String path = uri != null ? uri.getPath() : null;
+        if (path == null || path.isEmpty()) {
+            return "unknown";
+        }
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static class MeteredSession extends WebSocketSessionDecorator {
+        private final Meters meters;
+
+        MeteredSession(WebSocketSession session, Meters meters) {
+            super(session);
+            this.meters = meters;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            super.sendMessage(message);
+            meters.framesOut.increment();
+            meters.bytesOut.increment(message.getPayloadLength());
+        }
+    }
+}
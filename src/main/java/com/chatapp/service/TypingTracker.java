@@ -0,0 +1,136 @@
+package com.chatapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Collapses per-keystroke typing frames into one "started" and one "stopped" push per (sender, receiver).
+// Repeated "typing" frames only extend the pair's expiry; a sweeper emits "stopped" for pairs whose
+// client went quiet or vanished. Typing is best-effort, so new "started" pushes are shed first when the
+// STOMP channels are backed up, leaving their capacity for chat messages.
+@Service
+public class TypingTracker {
+
+    private record Pair(long senderId, long receiverId) {
+    }
+
+    @Autowired
+    private MessageBus messageBus;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ChannelLoad channelLoad;
+
+    @Value("${app.typing.ttl-ms:5000}")
+    private long ttlMs;
+
+    @Value("${app.typing.shed-wait-ms:50}")
+    private long shedWaitMs;
+
+    // pair -> expiry in System.nanoTime() units
+    private final ConcurrentHashMap<Pair, Long> active = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+    private Counter emitted;
+    private Counter coalesced;
+    private Counter shed;
+
+    @PostConstruct
+    public void start() {
+        emitted = Counter.builder("chat.typing.events").tag("result", "emitted").register(meterRegistry);
+        coalesced = Counter.builder("chat.typing.events").tag("result", "coalesced").register(meterRegistry);
+        shed = Counter.builder("chat.typing.events").tag("result", "shed").register(meterRegistry);
+        Gauge.builder("chat.typing.active", active, Map::size).register(meterRegistry);
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "typing-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(100, ttlMs / 2);
+        sweeper.scheduleWithFixedDelay(this::expireStale, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    // Each pair's state change and its push happen inside one map operation, so a start and a stop for the
+    // same pair arriving on different inbound threads cannot be pushed in the opposite order
+    public void onTyping(long senderId, long receiverId, boolean typing) {
+        Pair pair = new Pair(senderId, receiverId);
+        if (!typing) {
+            if (!stop(pair)) {
+                coalesced.increment();
+            }
+            return;
+        }
+        long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        // Only new "started" pushes are shed; a pair already shown as typing keeps being extended, and
+        // "stopped" is never shed, or the receiver would be left with a stuck indicator
+        boolean shedNew = overloaded();
+        active.compute(pair, (key, current) -> {
+            if (current != null) {
+                coalesced.increment();
+                return expiresAt;
+            }
+            if (shedNew) {
+                shed.increment();
+                return null;
+            }
+            emit(key, true);
+            return expiresAt;
+        });
+    }
+
+    // A sent message ends the sender's typing state right away
+    public void clear(long senderId, long receiverId) {
+        stop(new Pair(senderId, receiverId));
+    }
+
+    private boolean stop(Pair pair) {
+        boolean[] stopped = new boolean[1];
+        active.computeIfPresent(pair, (key, expiry) -> {
+            emit(key, false);
+            stopped[0] = true;
+            return null;
+        });
+        return stopped[0];
+    }
+
+    private void expireStale() {
+        long now = System.nanoTime();
+        for (Pair pair : active.keySet()) {
+            active.computeIfPresent(pair, (key, expiry) -> {
+                if (now - expiry < 0) {
+                    return expiry;
+                }
+                emit(key, false);
+                return null;
+            });
+        }
+    }
+
+    private void emit(Pair pair, boolean typing) {
+        emitted.increment();
+        messageBus.sendToUser(pair.receiverId(), "/queue/typing",
+                Map.of("senderId", pair.senderId(), "isTyping", typing));
+    }
+
+    private boolean overloaded() {
+        return channelLoad.maxAverageWaitMillis() > shedWaitMs;
+    }
+}
@@ -0,0 +1,146 @@
+package com.chatapp.service;
+
+import com.chatapp.security.CurrentUserIdArgumentResolver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Which users have WebSocket sessions where: a session count per local user, and a bitmask of remote
+// node ids (app.node-id is 0..15) per remote user. Local listeners hear about local online/offline
+// transitions so the cluster bus can tell its peers; remote listeners hear when a user gains their first
+// or loses their last remote node.
+@Component
+public class UserLocationRegistry {
+
+    public interface LocalPresenceListener {
+        void onLocalPresenceChanged(Long userId, boolean online);
+    }
+
+    public interface RemotePresenceListener {
+        void onRemotePresenceChanged(Long userId);
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<Long, Integer> localSessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Integer> remoteNodes = new ConcurrentHashMap<>();
+    private final List<LocalPresenceListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<RemotePresenceListener> remoteListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("chat.cluster.local_users", localSessions, Map::size).register(meterRegistry);
+        Gauge.builder("chat.cluster.remote_users", remoteNodes, Map::size).register(meterRegistry);
+    }
+
+    public void addListener(LocalPresenceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void addRemoteListener(RemotePresenceListener listener) {
+        remoteListeners.add(listener);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Long userId = userIdOf(event.getUser());
+        if (userId == null) {
+            return;
+        }
+        if (localSessions.merge(userId, 1, Integer::sum) == 1) {
+            listeners.forEach(l -> l.onLocalPresenceChanged(userId, true));
+        }
+    }
+
+    @EventListener
+    public void onDisconnected(SessionDisconnectEvent event) {
+        Long userId = userIdOf(event.getUser());
+        if (userId == null) {
+            return;
+        }
+        boolean[] wentOffline = new boolean[1];
+        localSessions.computeIfPresent(userId, (id, count) -> {
+            if (count <= 1) {
+                wentOffline[0] = true;
+                return null;
+            }
+            return count - 1;
+        });
+        if (wentOffline[0]) {
+            listeners.forEach(l -> l.onLocalPresenceChanged(userId, false));
+        }
+    }
+
+    public boolean isLocal(Long userId) {
+        return localSessions.containsKey(userId);
+    }
+
+    public int localSessionCount(Long userId) {
+        return localSessions.getOrDefault(userId, 0);
+    }
+
+    public Collection<Long> localUsers() {
+        return new ArrayList<>(localSessions.keySet());
+    }
+
+    // Bitmask of remote node ids holding a session for the user
+    public int remoteNodesOf(Long userId) {
+        return remoteNodes.getOrDefault(userId, 0);
+    }
+
+    public void setRemote(int nodeId, Long userId, boolean online) {
+        int bit = 1 << nodeId;
+        boolean[] changed = new boolean[1];
+        remoteNodes.compute(userId, (id, mask) -> {
+            int next = online ? (mask == null ? 0 : mask) | bit : (mask == null ? 0 : mask) & ~bit;
+            changed[0] = (mask == null) != (next == 0);
+            return next == 0 ? null : next;
+        });
+        if (changed[0]) {
+            remoteListeners.forEach(l -> l.onRemotePresenceChanged(userId));
+        }
+    }
+
+    // Replaces everything known about a node, e.g. after it (re)connects and sends a snapshot
+    public void replaceNode(int nodeId, Collection<Long> userIds) {
+        clearNode(nodeId);
+        for (Long userId : userIds) {
+            setRemote(nodeId, userId, true);
+        }
+    }
+
+    public void clearNode(int nodeId) {
+        int bit = 1 << nodeId;
+        for (Long userId : remoteNodes.keySet()) {
+            boolean[] changed = new boolean[1];
+            remoteNodes.computeIfPresent(userId, (id, mask) -> {
+                changed[0] = mask == bit;
+                return (mask & ~bit) == 0 ? null : mask & ~bit;
+            });
+            if (changed[0]) {
+                remoteListeners.forEach(l -> l.onRemotePresenceChanged(userId));
+            }
+        }
+    }
+
+    private static Long userIdOf(Principal principal) {
+        return principal instanceof Authentication
+                ? CurrentUserIdArgumentResolver.currentUserId((Authentication) principal)
+                : null;
+    }
+}
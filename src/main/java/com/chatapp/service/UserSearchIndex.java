@@ -0,0 +1,425 @@
+package com.chatapp.service;
+
+import com.chatapp.entity.User;
+import com.chatapp.util.TransactionUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-memory user lookup over username, name and email. Queries of three or more characters intersect
+// trigram posting lists (sorted user ids) and are verified against the stored fields, so results match
+// the old substring search. Shorter queries are prefix matches over a sorted set of field tokens.
+// Both paths stop after limit + 1 hits, so cost follows the result size rather than the user count.
+@Service
+public class UserSearchIndex {
+    private static final int GRAM = 3;
+    private static final char KEY_SEP = '\u0000';
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ClusterInvalidations invalidations;
+
+    // userId -> lowercased {username, name, email}
+    private volatile ConcurrentHashMap<Long, String[]> entries = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String, Posting> trigrams = new ConcurrentHashMap<>();
+    // token + '\0' + userId, ordered by token
+    private volatile ConcurrentSkipListSet<String> tokens = new ConcurrentSkipListSet<>();
+    private volatile boolean ready;
+    private boolean warming;
+    private final List<Runnable> pendingDuringWarmup = new ArrayList<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("chat.user_search.users", this, i -> i.entries.size()).register(meterRegistry);
+        Gauge.builder("chat.user_search.trigrams", this, i -> i.trigrams.size()).register(meterRegistry);
+        FunctionCounter.builder("chat.user_search.lookups", lookups, LongAdder::sum)
+                .tag("source", "index").register(meterRegistry);
+        FunctionCounter.builder("chat.user_search.lookups", fallbacks, LongAdder::sum)
+                .tag("source", "database").register(meterRegistry);
+        invalidations.register(ClusterInvalidations.Kind.USER_PROFILE, inv -> reload(inv.ids()[0]));
+        invalidations.register(ClusterInvalidations.Kind.USER_REMOVED, inv -> mutate(() -> unindex(inv.ids()[0])));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        synchronized (this) {
+            warming = true;
+        }
+        ConcurrentHashMap<Long, String[]> builtEntries = new ConcurrentHashMap<>();
+        Map<String, Posting> builtGrams = new HashMap<>();
+        ConcurrentSkipListSet<String> builtTokens = new ConcurrentSkipListSet<>();
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        // Ascending ids turn every posting insert into an append
+        streaming.query("SELECT id, username, name, email FROM users ORDER BY id", rs -> {
+            long id = rs.getLong(1);
+            String[] fields = normalize(rs.getString(2), rs.getString(3), rs.getString(4));
+            builtEntries.put(id, fields);
+            for (String gram : gramsOf(fields)) {
+                builtGrams.put(gram, builtGrams.getOrDefault(gram, Posting.EMPTY).add(id));
+            }
+            for (String token : tokensOf(fields)) {
+                builtTokens.add(token + KEY_SEP + id);
+            }
+        });
+
+        synchronized (this) {
+            entries = builtEntries;
+            trigrams = new ConcurrentHashMap<>(builtGrams);
+            tokens = builtTokens;
+            warming = false;
+            pendingDuringWarmup.forEach(Runnable::run);
+            pendingDuringWarmup.clear();
+            ready = true;
+        }
+        System.out.println("INFO: User search index loaded: " + builtEntries.size() + " users, "
+                + builtGrams.size() + " trigrams");
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Callers fall back to the database while the index is warming up
+    public void recordFallback() {
+        fallbacks.increment();
+    }
+
+    public void index(User user) {
+        long id = user.getId();
+        String[] fields = normalize(user.getUsername(), user.getName(), user.getEmail());
+        TransactionUtil.afterCommit(() -> {
+            mutate(() -> put(id, fields));
+            invalidations.publish(ClusterInvalidations.Kind.USER_PROFILE, id);
+        });
+    }
+
+    public void remove(long userId) {
+        TransactionUtil.afterCommit(() -> {
+            mutate(() -> unindex(userId));
+            invalidations.publish(ClusterInvalidations.Kind.USER_REMOVED, userId);
+        });
+    }
+
+    // A peer changed this user; its fields are read back from the database
+    private void reload(long userId) {
+        List<String[]> rows = new JdbcTemplate(dataSource).query(
+                "SELECT username, name, email FROM users WHERE id = ?",
+                (rs, rowNum) -> normalize(rs.getString(1), rs.getString(2), rs.getString(3)), userId);
+        mutate(() -> {
+            if (rows.isEmpty()) {
+                unindex(userId);
+            } else {
+                put(userId, rows.get(0));
+            }
+        });
+    }
+
+    private void put(long id, String[] fields) {
+        unindex(id);
+        entries.put(id, fields);
+        for (String gram : gramsOf(fields)) {
+            trigrams.put(gram, trigrams.getOrDefault(gram, Posting.EMPTY).add(id));
+        }
+        for (String token : tokensOf(fields)) {
+            tokens.add(token + KEY_SEP + id);
+        }
+    }
+
+    public Matches search(String query, int limit, String cursor) {
+        lookups.increment();
+        String q = query.trim().toLowerCase();
+        if (q.isEmpty()) {
+            return new Matches(List.of(), null, false);
+        }
+        return q.length() < GRAM ? searchPrefix(q, limit, cursor) : searchTrigrams(q, limit, cursor);
+    }
+
+    private Matches searchTrigrams(String q, int limit, String cursor) {
+        long afterId = cursor == null ? 0 : decodeIdCursor(cursor);
+        List<String> grams = new ArrayList<>(gramsOf(new String[] {q}));
+        Posting[] lists = new Posting[grams.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = trigrams.get(grams.get(i));
+            if (lists[i] == null) {
+                return new Matches(List.of(), null, false);
+            }
+        }
+        // Drive the intersection from the rarest trigram
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        Posting driver = lists[0];
+        int start = Arrays.binarySearch(driver.ids, 0, driver.size, afterId);
+        start = start >= 0 ? start + 1 : -start - 1;
+
+        List<Long> ids = new ArrayList<>();
+        boolean hasMore = false;
+        for (int i = start; i < driver.size; i++) {
+            long id = driver.ids[i];
+            if (!inAll(lists, id) || !matches(entries.get(id), q)) {
+                continue;
+            }
+            if (ids.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            ids.add(id);
+        }
+        String next = hasMore ? encode("i|" + ids.get(ids.size() - 1)) : null;
+        return new Matches(ids, next, hasMore);
+    }
+
+    private Matches searchPrefix(String q, int limit, String cursor) {
+        String from = cursor == null ? q : decodeTokenCursor(cursor);
+        NavigableSet<String> tail = tokens.tailSet(from, cursor == null);
+        List<Long> ids = new ArrayList<>();
+        String lastKey = null;
+        boolean hasMore = false;
+        for (String key : tail) {
+            if (!key.startsWith(q)) {
+                break;
+            }
+            int sep = key.lastIndexOf(KEY_SEP);
+            String token = key.substring(0, sep);
+            long id = Long.parseLong(key.substring(sep + 1));
+            // A user with several matching tokens is reported once, under the smallest one
+            if (!token.equals(firstTokenWithPrefix(entries.get(id), q))) {
+                continue;
+            }
+            if (ids.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            ids.add(id);
+            lastKey = key;
+        }
+        String next = hasMore ? encode("p|" + lastKey) : null;
+        return new Matches(ids, next, hasMore);
+    }
+
+    private synchronized void mutate(Runnable change) {
+        if (warming) {
+            pendingDuringWarmup.add(change);
+        }
+        change.run();
+    }
+
+    private void unindex(long id) {
+        String[] old = entries.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String gram : gramsOf(old)) {
+            Posting current = trigrams.get(gram);
+            if (current == null) {
+                continue;
+            }
+            Posting next = current.remove(id);
+            if (next.size == 0) {
+                trigrams.remove(gram);
+            } else {
+                trigrams.put(gram, next);
+            }
+        }
+        for (String token : tokensOf(old)) {
+            tokens.remove(token + KEY_SEP + id);
+        }
+    }
+
+    private static boolean inAll(Posting[] lists, long id) {
+        for (int i = 1; i < lists.length; i++) {
+            if (Arrays.binarySearch(lists[i].ids, 0, lists[i].size, id) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String[] fields, String q) {
+        if (fields == null) {
+            return false;
+        }
+        for (String field : fields) {
+            if (field.contains(q)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String firstTokenWithPrefix(String[] fields, String q) {
+        if (fields == null) {
+            return null;
+        }
+        for (String token : tokensOf(fields)) {
+            if (token.startsWith(q)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    private static String[] normalize(String username, String name, String email) {
+        return new String[] {
+                username == null ? "" : username.toLowerCase(),
+                name == null ? "" : name.toLowerCase(),
+                email == null ? "" : email.toLowerCase()
+        };
+    }
+
+    private static TreeSet<String> gramsOf(String[] fields) {
+        TreeSet<String> grams = new TreeSet<>();
+        for (String field : fields) {
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                grams.add(field.substring(i, i + GRAM));
+            }
+        }
+        return grams;
+    }
+
+    // Sorted so the first match is also the smallest key the user is listed under
+    private static TreeSet<String> tokensOf(String[] fields) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String field : fields) {
+            if (field.isEmpty()) {
+                continue;
+            }
+            result.add(field);
+            for (String word : field.split("\\s+")) {
+                if (!word.isEmpty()) {
+                    result.add(word);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor, String kind) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (raw.startsWith(kind + "|")) {
+                return raw.substring(kind.length() + 1);
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through
+        }
+        throw new RuntimeException("Invalid cursor");
+    }
+
+    private static long decodeIdCursor(String cursor) {
+        try {
+            return Long.parseLong(decode(cursor, "i"));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    private static String decodeTokenCursor(String cursor) {
+        return decode(cursor, "p");
+    }
+
+    public static String idCursor(long id) {
+        return encode("i|" + id);
+    }
+
+    public static long parseIdCursor(String cursor) {
+        return cursor == null ? 0 : decodeIdCursor(cursor);
+    }
+
+    public static class Matches {
+        private final List<Long> ids;
+        private final String nextCursor;
+        private final boolean hasMore;
+
+        public Matches(List<Long> ids, String nextCursor, boolean hasMore) {
+            this.ids = ids;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public boolean isHasMore() {
+            return hasMore;
+        }
+    }
+
+    // Sorted ids[0..size). Appends past the last id reuse spare capacity in place: readers of the previous
+    // Posting never look beyond their own size, so only out-of-order inserts and removals copy.
+    private static final class Posting {
+        static final Posting EMPTY = new Posting(new long[0], 0);
+
+        final long[] ids;
+        final int size;
+
+        Posting(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        Posting add(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return this;
+            }
+            int insertAt = -pos - 1;
+            if (insertAt == size && size < ids.length) {
+                ids[size] = id;
+                return new Posting(ids, size + 1);
+            }
+            long[] next = new long[Math.max(4, size + (size >> 1) + 1)];
+            System.arraycopy(ids, 0, next, 0, insertAt);
+            next[insertAt] = id;
+            System.arraycopy(ids, insertAt, next, insertAt + 1, size - insertAt);
+            return new Posting(next, size + 1);
+        }
+
+        Posting remove(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return this;
+            }
+            long[] next = new long[size - 1];
+            System.arraycopy(ids, 0, next, 0, pos);
+            System.arraycopy(ids, pos + 1, next, pos, size - pos - 1);
+            return new Posting(next, size - 1);
+        }
+    }
+}
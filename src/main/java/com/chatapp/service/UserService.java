@@ -1,28 +1,40 @@
 package com.chatapp.service;
 
 import com.chatapp.dto.UserDTO;
+import com.chatapp.dto.UserDirectoryEntryDTO;
+import com.chatapp.dto.UserDirectoryPageDTO;
+import com.chatapp.dto.UserPageDTO;
 import com.chatapp.entity.*;
 import com.chatapp.repository.*;
-import com.chatapp.util.Base64Util;
+import com.chatapp.security.PrincipalCache;
+import com.chatapp.util.DirectoryCursor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class UserService {
+    public static final int DEFAULT_SEARCH_LIMIT = 20;
+    public static final int MAX_SEARCH_LIMIT = 50;
+    public static final int DEFAULT_DIRECTORY_LIMIT = 50;
+    public static final int MAX_DIRECTORY_LIMIT = 100;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
     private MessageRepository messageRepository;
@@ -39,6 +51,30 @@ public class UserService {
     @Autowired
     private ChatGroupRepository chatGroupRepository;
 
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private ConversationReadStateRepository readStateRepository;
+
+    @Autowired
+    private MessagePipeline messagePipeline;
+
+    @Autowired
+    private FriendshipGraph friendshipGraph;
+
+    @Autowired
+    private GroupMembershipIndex membershipIndex;
+
+    @Autowired
+    private MessageSearchService searchService;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
     public User registerUser(String username, String email, String password, String name, String phone) {
         if (userRepository.existsByUsername(username)) {
             throw new RuntimeException("Username already exists");
@@ -50,10 +86,12 @@ public class UserService {
         User user = new User();
         user.setUsername(username);
         user.setEmail(email);
-        user.setPassword(passwordEncoder.encode(password));
+        user.setPassword(passwordHashingService.encode(password));
         user.setName(name);
         user.setPhone(phone);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userSearchIndex.index(saved);
+        return saved;
     }
 
     public Optional<User> findByUsername(String username) {
@@ -68,19 +106,75 @@ public class UserService {
         return userRepository.findById(id);
     }
 
-    public List<UserDTO> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    // sort: username (default), name, or newest
+    @Transactional(readOnly = true)
+    public UserDirectoryPageDTO getDirectoryPage(String sort, Integer limit, String cursor) {
+        String order = sort == null || sort.isBlank() ? "username" : sort;
+        int size = limit == null ? DEFAULT_DIRECTORY_LIMIT : Math.max(1, Math.min(limit, MAX_DIRECTORY_LIMIT));
+        DirectoryCursor after = DirectoryCursor.decode(cursor);
+        if (after != null && !after.getSort().equals(order)) {
+            throw new RuntimeException("Cursor does not match sort order");
+        }
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        List<UserDirectoryEntryDTO> found;
+        switch (order) {
+            case "username":
+                found = userRepository.findDirectoryByUsername(after == null ? "" : after.getKey(),
+                        after == null ? 0L : after.getId(), page);
+                break;
+            case "name":
+                found = userRepository.findDirectoryByName(after == null ? "" : after.getKey(),
+                        after == null ? 0L : after.getId(), page);
+                break;
+            case "newest":
+                found = userRepository.findDirectoryNewest(after == null ? Long.MAX_VALUE : after.getId(), page);
+                break;
+            default:
+                throw new RuntimeException("Unsupported sort: " + order);
+        }
+
+        boolean hasMore = found.size() > size;
+        List<UserDirectoryEntryDTO> users = hasMore ? found.subList(0, size) : found;
+        String next = null;
+        if (hasMore) {
+            UserDirectoryEntryDTO last = users.get(users.size() - 1);
+            String key = order.equals("name") ? last.getName() : order.equals("username") ? last.getUsername() : "";
+            next = new DirectoryCursor(order, key, last.getId()).encode();
+        }
+        return new UserDirectoryPageDTO(users, next, hasMore);
     }
 
-    public List<UserDTO> searchUsers(String query) {
-        return userRepository.findAll().stream()
-                .filter(user -> user.getUsername().toLowerCase().contains(query.toLowerCase()) ||
-                               user.getName().toLowerCase().contains(query.toLowerCase()) ||
-                               user.getEmail().toLowerCase().contains(query.toLowerCase()))
+    @Transactional(readOnly = true)
+    public UserPageDTO searchUsers(String query, Integer limit, String cursor) {
+        int size = limit == null ? DEFAULT_SEARCH_LIMIT : Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        if (!userSearchIndex.isReady()) {
+            userSearchIndex.recordFallback();
+            return searchUsersInDatabase(query, size, cursor);
+        }
+        UserSearchIndex.Matches matches = userSearchIndex.search(query, size, cursor);
+        Map<Long, User> users = userRepository.findAllById(matches.getIds()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        List<UserDTO> page = matches.getIds().stream()
+                .map(users::get)
+                .filter(u -> u != null)
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
+        return new UserPageDTO(page, matches.getNextCursor(), matches.isHasMore());
+    }
+
+    private UserPageDTO searchUsersInDatabase(String query, int size, String cursor) {
+        String q = query.trim().toLowerCase();
+        if (q.isEmpty()) {
+            return new UserPageDTO(List.of(), null, false);
+        }
+        String pattern = "%" + q.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        List<User> found = userRepository.searchAfterId(pattern, UserSearchIndex.parseIdCursor(cursor),
+                PageRequest.of(0, size + 1));
+        boolean hasMore = found.size() > size;
+        List<User> page = hasMore ? found.subList(0, size) : found;
+        String next = hasMore ? UserSearchIndex.idCursor(page.get(page.size() - 1).getId()) : null;
+        return new UserPageDTO(page.stream().map(this::convertToDTO).collect(Collectors.toList()), next, hasMore);
     }
 
     public User updateUserProfile(Long userId, String name, String status, String theme, String email, String phone) {
@@ -105,22 +199,26 @@ public class UserService {
             user.setPhone(phone.trim().isEmpty() ? null : phone);
         }
         
-        return userRepository.save(user);
+        messagePipeline.evictUser(userId);
+        principalCache.invalidate(user.getUsername());
+        User saved = userRepository.save(user);
+        userSearchIndex.index(saved);
+        return saved;
     }
 
     public User updateProfilePicture(Long userId, MultipartFile file) throws IOException {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        user.setProfilePicture(file.getBytes());
-        user.setProfilePictureType(file.getContentType());
+        BlobStorageService.StoredBlob blob = blobStorageService.store(file);
+        user.setProfilePictureKey(blob.getKey());
+        user.setProfilePictureSize(blob.getSize());
+        user.setProfilePictureType(blob.getContentType());
+        principalCache.invalidate(user.getUsername());
         return userRepository.save(user);
     }
 
-    public void setOnlineStatus(Long userId, boolean online) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        user.setOnline(online);
-        userRepository.save(user);
+    public void updatePasswordHash(Long userId, String encodedPassword) {
+        userRepository.updatePassword(userId, encodedPassword);
     }
 
     public void deleteUser(Long userId) {
@@ -133,6 +231,7 @@ public class UserService {
 
         List<Message> receivedMessages = messageRepository.findByReceiver(user);
         messageRepository.deleteAll(receivedMessages);
+        readStateRepository.deleteByUserId(userId);
 
         // Delete all friend requests where user is sender or receiver
         List<FriendRequest> sentRequests = friendRequestRepository.findBySender(user);
@@ -140,9 +239,11 @@ public class UserService {
 
         List<FriendRequest> receivedRequests = friendRequestRepository.findByReceiver(user);
         friendRequestRepository.deleteAll(receivedRequests);
+        friendshipGraph.removeUser(userId);
 
         // Handle groups where user is creator - transfer to first admin or delete if no admins
         List<ChatGroup> createdGroups = chatGroupRepository.findByCreatedBy(user);
+        List<Long> deletedGroupIds = new ArrayList<>();
 
         for (ChatGroup group : createdGroups) {
             List<GroupMember> members = groupMemberRepository.findByGroup(group);
@@ -173,6 +274,7 @@ public class UserService {
                     groupMessageRepository.deleteAll(groupMessages);
                     groupMemberRepository.deleteAll(members);
                     chatGroupRepository.delete(group);
+                    deletedGroupIds.add(group.getId());
                 }
             }
         }
@@ -180,6 +282,14 @@ public class UserService {
         // Delete all group memberships
         List<GroupMember> memberships = groupMemberRepository.findByUser(user);
         groupMemberRepository.deleteAll(memberships);
+        membershipIndex.invalidateGroups(memberships.stream()
+                .map(m -> m.getGroup().getId())
+                .collect(Collectors.toList()));
+        membershipIndex.invalidateGroups(createdGroups.stream()
+                .map(ChatGroup::getId)
+                .collect(Collectors.toList()));
+        membershipIndex.invalidateUser(userId);
+        searchService.removeUser(userId, deletedGroupIds);
 
         // Delete all group messages where user is sender
         List<GroupMessage> groupMessages = groupMessageRepository.findBySender(user);
@@ -187,6 +297,9 @@ public class UserService {
 
         // Finally, delete the user
         userRepository.delete(user);
+        messagePipeline.evictUser(userId);
+        userSearchIndex.remove(userId);
+        principalCache.invalidate(user.getUsername());
     }
 
     public UserDTO convertToDTO(User user) {
@@ -199,8 +312,9 @@ public class UserService {
         dto.setOnline(user.isOnline());
         dto.setStatus(user.getStatus());
         dto.setTheme(user.getTheme());
-        if (user.getProfilePicture() != null) {
-            dto.setProfilePictureBase64(Base64Util.encode(user.getProfilePicture()));
+        if (user.getProfilePictureKey() != null) {
+            dto.setProfilePictureUrl(BlobStorageService.urlFor(user.getProfilePictureKey(), user.getProfilePictureType()));
+            dto.setProfilePictureSize(user.getProfilePictureSize());
             dto.setProfilePictureType(user.getProfilePictureType());
         }
         return dto;
@@ -0,0 +1,45 @@
+package com.chatapp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque (sort, sort key, id) keyset cursor for the user directory
+public class DirectoryCursor {
+    private final String sort;
+    private final String key;
+    private final Long id;
+
+    public DirectoryCursor(String sort, String key, Long id) {
+        this.sort = sort;
+        this.key = key;
+        this.id = id;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = sort + "|" + id + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static DirectoryCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            return new DirectoryCursor(parts[0], parts[2], Long.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.chatapp.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock-free token bucket in its GCRA form: rather than a token count plus a refill timestamp, it keeps a
+// single "theoretical arrival time" that each permit pushes forward by one interval, and a permit is
+// refused while that time runs more than a burst ahead of now. One CAS per acquire, no locks.
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong arrival;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.burstNanos = intervalNanos * Math.max(0, burst - 1);
+        this.arrival = new AtomicLong(System.nanoTime());
+    }
+
+    // 0 when a permit was taken, otherwise the nanoseconds until one becomes available
+    public long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = arrival.get();
+            long start = current - now > 0 ? current : now;
+            long wait = start - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrival.compareAndSet(current, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ const DEFAULT_AVATAR = '/images/default-avatar.svg';
 let currentChatId = null;
 let currentChatType = null;
 let allUsers = [];
+let allUsersCursor = null;
 let friends = [];
 let groups = [];
 let pendingRequests = [];
@@ -10,6 +11,7 @@ let sentRequests = [];
 let userDirectory = {};
 let currentView = 'friends';
 let selectedGroup = null;
+let lastGroupSequence = {};
 
 // Toast notification system for dashboard
 function showToast(type, title, message) {
@@ -137,7 +139,7 @@ function setupSearch() {
             headers: { 'Authorization': 'Bearer ' + getAuthToken() }
         })
             .then(handleJsonResponse)
-            .then(data => renderUserList(data))
+            .then(data => renderUserList(data.users))
             .catch(err => console.error('Search error', err));
     }, 300);
     
@@ -156,10 +158,16 @@ function setupMessageInput() {
     messageInput.addEventListener('input', () => {
         if (currentChatType === 'user' && currentChatId) {
             const me = getCurrentUser();
-            sendTypingIndicator(me.id, currentChatId, true);
+            // The server keeps typing state alive for a few seconds, so refresh it at most every 2s
+            const now = Date.now();
+            if (!window.lastTypingSent || now - window.lastTypingSent > 2000) {
+                sendTypingIndicator(me.id, currentChatId, true);
+                window.lastTypingSent = now;
+            }
             clearTimeout(window.typingTimeout);
             window.typingTimeout = setTimeout(() => {
                 sendTypingIndicator(me.id, currentChatId, false);
+                window.lastTypingSent = 0;
             }, 1000);
         }
     });
@@ -308,20 +316,33 @@ function loadAllUsers() {
     const cacheKey = 'allUsers';
     const cached = getCachedData(cacheKey);
     if (cached) {
-        allUsers = cached;
+        allUsers = cached.users;
+        allUsersCursor = cached.nextCursor;
         buildUserDirectory();
         if (currentView === 'all-users') displayAllUsers();
         return;
     }
-    
-    fetch('/api/users/all', {
+    allUsers = [];
+    allUsersCursor = null;
+    fetchDirectoryPage();
+}
+
+function loadMoreUsers() {
+    if (allUsersCursor) fetchDirectoryPage(allUsersCursor);
+}
+
+function fetchDirectoryPage(cursor) {
+    let url = '/api/users/directory?sort=name&limit=50';
+    if (cursor) url += `&cursor=${encodeURIComponent(cursor)}`;
+    fetch(url, {
         headers: { 'Authorization': 'Bearer ' + getAuthToken() }
     })
         .then(handleJsonResponse)
         .then(data => {
             const me = getCurrentUser();
-            allUsers = (data || []).filter(u => me && u.id !== me.id);
-            setCachedData(cacheKey, allUsers);
+            allUsers = allUsers.concat((data.users || []).filter(u => me && u.id !== me.id));
+            allUsersCursor = data.hasMore ? data.nextCursor : null;
+            setCachedData('allUsers', { users: allUsers, nextCursor: allUsersCursor });
             buildUserDirectory();
             if (currentView === 'all-users') displayAllUsers();
         })
@@ -329,10 +350,10 @@ function loadAllUsers() {
 }
 
 function displayAllUsers() {
-    renderUserList(allUsers);
+    renderUserList(allUsers, !!allUsersCursor);
 }
 
-function renderUserList(list) {
+function renderUserList(list, showLoadMore) {
     const container = document.getElementById('chatMessages');
     if (!container) return;
 
@@ -361,6 +382,11 @@ function renderUserList(list) {
                 </div>`;
         });
         html += '</div>';
+        if (showLoadMore) {
+            html += `<div class="text-center mt-3">
+                        <button class="btn btn-sm btn-outline-primary" onclick="loadMoreUsers()">Load more</button>
+                     </div>`;
+        }
     }
     html += '</div>';
     container.innerHTML = html;
@@ -442,8 +468,8 @@ function displayGroups() {
     } else {
         html += '<div class="list-group">';
         groups.forEach(group => {
-            const avatarStyle = group.groupImageBase64
-                ? `style="background-image:url('data:${group.groupImageType};base64,${group.groupImageBase64}')"`
+            const avatarStyle = group.groupImageUrl
+                ? `style="background-image:url('${group.groupImageUrl}')"`
                 : `style="background-image:url('${DEFAULT_AVATAR}')"`
             html += `
                 <div class="list-group-item user-list-item">
@@ -502,14 +528,14 @@ function openChat(id, type, name) {
 }
 
 function loadConversation(userId) {
-    fetch(`/api/chat/conversation/${userId}`, {
+    fetch(`/api/chat/conversation/${userId}/page?limit=50`, {
         headers: {
             'Authorization': 'Bearer ' + getAuthToken()
         }
     })
     .then(handleJsonResponse)
-    .then(messages => {
-        displayMessages(messages);
+    .then(page => {
+        displayMessages(page.messages);
         markConversationAsRead(userId);
     })
     .catch(error => console.error('Error loading conversation:', error));
@@ -530,11 +556,9 @@ function displayMessages(messages) {
     const chatMessages = document.getElementById('chatMessages');
     chatMessages.innerHTML = '';
     
-    const currentUserId = getCurrentUser().id;
-    
     if (!messages || messages.length === 0) {
         chatMessages.innerHTML = `
-            <div class="text-center text-muted mt-5">
+            <div class="text-center text-muted mt-5" id="emptyConversation">
                 <i class="fas fa-comments fa-3x mb-3"></i>
                 <p>No messages yet. Start the conversation!</p>
             </div>
@@ -542,34 +566,7 @@ function displayMessages(messages) {
         return;
     }
     
-    messages.forEach(message => {
-        const isSent = message.senderId === currentUserId;
-        const messageDiv = document.createElement('div');
-        messageDiv.className = `message ${isSent ? 'sent' : ''}`;
-        
-        let content = '';
-        if (message.type === 'IMAGE') {
-            content = `<img src="data:${message.mediaType};base64,${message.mediaDataBase64}" class="lazy-load" style="max-width: 300px; border-radius: 10px; cursor: pointer;" onclick="window.open(this.src, '_blank')" onload="this.classList.add('loaded')">`;
-        } else if (message.type === 'FILE') {
-            content = `<a href="data:${message.mediaType};base64,${message.mediaDataBase64}" download="${message.fileName}" class="text-decoration-none">
-                <i class="fas fa-file me-2"></i>${escapeHtml(message.fileName)}
-            </a>`;
-        } else {
-            content = escapeHtml(message.content);
-        }
-        
-        messageDiv.innerHTML = `
-            <div class="message-content">
-                ${content}
-                <div class="mt-1" style="font-size: 0.75rem; opacity: 0.7;">
-                    ${new Date(message.timestamp).toLocaleTimeString()}
-                    ${isSent && message.isRead ? '<i class="fas fa-check-double ms-1"></i>' : isSent ? '<i class="fas fa-check ms-1"></i>' : ''}
-                </div>
-            </div>
-        `;
-        
-        chatMessages.appendChild(messageDiv);
-    });
+    messages.forEach(message => appendDirectMessage(message, false));
     
     // Smooth scroll to bottom
     setTimeout(() => {
@@ -580,40 +577,55 @@ function displayMessages(messages) {
     }, 100);
 }
 
-function displayGroupMessages(messages) {
+function appendDirectMessage(message, scroll = true) {
     const chatMessages = document.getElementById('chatMessages');
-    chatMessages.innerHTML = '';
-    
+    const placeholder = document.getElementById('emptyConversation');
+    if (placeholder) {
+        placeholder.remove();
+    }
     const currentUserId = getCurrentUser().id;
+    const isSent = message.senderId === currentUserId;
+    const messageDiv = document.createElement('div');
+    messageDiv.className = `message ${isSent ? 'sent' : ''}`;
     
-    messages.forEach(message => {
-        const isSent = message.senderId === currentUserId;
-        const messageDiv = document.createElement('div');
-        messageDiv.className = `message ${isSent ? 'sent' : ''}`;
-        
-        let content = '';
-        if (message.type === 'IMAGE') {
-            content = `<img src="data:${message.mediaType};base64,${message.mediaDataBase64}" style="max-width: 300px; border-radius: 10px;">`;
-        } else if (message.type === 'FILE') {
-            content = `<a href="data:${message.mediaType};base64,${message.mediaDataBase64}" download="${message.fileName}">
-                <i class="fas fa-file me-2"></i>${message.fileName}
-            </a>`;
-        } else {
-            content = message.content;
-        }
-        
-        messageDiv.innerHTML = `
-            <div class="message-content">
-                ${!isSent ? `<div style="font-weight: bold; margin-bottom: 5px;">${message.senderName}</div>` : ''}
-                ${content}
-                <div class="mt-1" style="font-size: 0.75rem; opacity: 0.7;">
-                    ${new Date(message.timestamp).toLocaleTimeString()}
-                </div>
+    let content = '';
+    if (message.type === 'IMAGE') {
+        content = `<img src="${message.mediaUrl}" loading="lazy" class="lazy-load" style="max-width: 300px; border-radius: 10px; cursor: pointer;" onclick="window.open(this.src, '_blank')" onload="this.classList.add('loaded')">`;
+    } else if (message.type === 'FILE') {
+        content = `<a href="${message.mediaUrl}" download="${message.fileName}" class="text-decoration-none">
+            <i class="fas fa-file me-2"></i>${escapeHtml(message.fileName)}
+        </a>`;
+    } else {
+        content = escapeHtml(message.content);
+    }
+    
+    messageDiv.innerHTML = `
+        <div class="message-content">
+            ${content}
+            <div class="mt-1" style="font-size: 0.75rem; opacity: 0.7;">
+                ${new Date(message.timestamp).toLocaleTimeString()}
+                ${isSent && message.isRead ? '<i class="fas fa-check-double ms-1"></i>' : isSent ? '<i class="fas fa-check ms-1"></i>' : ''}
             </div>
-        `;
-        
-        chatMessages.appendChild(messageDiv);
-    });
+        </div>
+    `;
+    
+    chatMessages.appendChild(messageDiv);
+    
+    if (scroll) {
+        setTimeout(() => {
+            chatMessages.scrollTo({
+                top: chatMessages.scrollHeight,
+                behavior: 'smooth'
+            });
+        }, 100);
+    }
+}
+
+function displayGroupMessages(messages) {
+    const chatMessages = document.getElementById('chatMessages');
+    chatMessages.innerHTML = '';
+    
+    messages.forEach(message => appendGroupMessage(message, false));
     
     // Smooth scroll to bottom
     setTimeout(() => {
@@ -624,6 +636,49 @@ function displayGroupMessages(messages) {
     }, 100);
 }
 
+function appendGroupMessage(message, scroll = true) {
+    const chatMessages = document.getElementById('chatMessages');
+    const currentUserId = getCurrentUser().id;
+    if (message.sequence != null) {
+        lastGroupSequence[message.groupId] = Math.max(lastGroupSequence[message.groupId] || 0, message.sequence);
+    }
+    const isSent = message.senderId === currentUserId;
+    const messageDiv = document.createElement('div');
+    messageDiv.className = `message ${isSent ? 'sent' : ''}`;
+    
+    let content = '';
+    if (message.type === 'IMAGE') {
+        content = `<img src="${message.mediaUrl}" loading="lazy" style="max-width: 300px; border-radius: 10px;">`;
+    } else if (message.type === 'FILE') {
+        content = `<a href="${message.mediaUrl}" download="${message.fileName}">
+            <i class="fas fa-file me-2"></i>${message.fileName}
+        </a>`;
+    } else {
+        content = message.content;
+    }
+    
+    messageDiv.innerHTML = `
+        <div class="message-content">
+            ${!isSent ? `<div style="font-weight: bold; margin-bottom: 5px;">${message.senderName}</div>` : ''}
+            ${content}
+            <div class="mt-1" style="font-size: 0.75rem; opacity: 0.7;">
+                ${new Date(message.timestamp).toLocaleTimeString()}
+            </div>
+        </div>
+    `;
+    
+    chatMessages.appendChild(messageDiv);
+    
+    if (scroll) {
+        setTimeout(() => {
+            chatMessages.scrollTo({
+                top: chatMessages.scrollHeight,
+                behavior: 'smooth'
+            });
+        }, 100);
+    }
+}
+
 function sendMessage() {
     const input = document.getElementById('messageInput');
     const content = input.value.trim();
@@ -633,28 +688,8 @@ function sendMessage() {
     const user = getCurrentUser();
     
     if (currentChatType === 'user') {
+        // The server echoes the message back on /queue/messages, which renders it
         sendMessageViaWebSocket(user.id, currentChatId, content, 'TEXT');
-        
-        // Add message to UI immediately
-        const chatMessages = document.getElementById('chatMessages');
-        const messageDiv = document.createElement('div');
-        messageDiv.className = 'message sent';
-        messageDiv.innerHTML = `
-            <div class="message-content">
-                ${content}
-                <div class="mt-1" style="font-size: 0.75rem; opacity: 0.7;">
-                    ${new Date().toLocaleTimeString()} ✓
-                </div>
-            </div>
-        `;
-        chatMessages.appendChild(messageDiv);
-        // Smooth scroll to bottom
-        setTimeout(() => {
-            chatMessages.scrollTo({
-                top: chatMessages.scrollHeight,
-                behavior: 'smooth'
-            });
-        }, 100);
     } else if (currentChatType === 'group') {
         sendGroupMessageViaWebSocket(currentChatId, user.id, content, 'TEXT');
     }
@@ -665,13 +700,41 @@ function sendMessage() {
 function onMessageReceived(message) {
     if (currentChatType === 'user' && currentChatId && 
         (message.senderId === currentChatId || message.receiverId === currentChatId)) {
-        loadConversation(currentChatId);
+        // Append the pushed message instead of reloading; it may not be persisted yet in pipeline mode
+        appendDirectMessage(message);
+        if (message.senderId === currentChatId) {
+            markConversationAsRead(currentChatId);
+        }
     }
 }
 
-function onGroupMessageReceived(groupId, messages) {
-    if (currentChatType === 'group' && currentChatId === groupId) {
-        displayGroupMessages(messages);
+function onGroupMessageReceived(groupId, payload) {
+    if (currentChatType !== 'group' || currentChatId !== groupId) {
+        return;
+    }
+    // Legacy full-history broadcast
+    if (Array.isArray(payload)) {
+        displayGroupMessages(payload);
+        return;
+    }
+    const lastSeen = lastGroupSequence[groupId];
+    if (lastSeen != null && payload.sequence != null && payload.sequence > lastSeen + 1) {
+        // Missed one or more deltas: fetch only the gap, then append the new message
+        fetch(`/api/groups/${groupId}/messages/range?fromSeq=${lastSeen + 1}&toSeq=${payload.sequence - 1}`, {
+            headers: {
+                'Authorization': 'Bearer ' + getAuthToken()
+            }
+        })
+        .then(handleJsonResponse)
+        .then(missing => {
+            missing.forEach(message => appendGroupMessage(message, false));
+            appendGroupMessage(payload);
+        })
+        .catch(error => console.error('Error loading missing group messages:', error));
+        return;
+    }
+    if (lastSeen == null || payload.sequence == null || payload.sequence > lastSeen) {
+        appendGroupMessage(payload);
     }
 }
 
@@ -687,6 +750,12 @@ function onTypingReceived(typingData) {
     }
 }
 
+function onPresenceReceived(presence) {
+    const user = userDirectory[presence.userId];
+    if (user) user.online = presence.online;
+    if (currentView === 'friends') displayFriends();
+}
+
 function markConversationAsRead(userId) {
     fetch(`/api/chat/read/${userId}`, {
         method: 'POST',
@@ -776,8 +845,8 @@ function showProfileModal() {
     document.getElementById('profileTheme').value = user.theme || 'light';
     
     const preview = document.getElementById('profilePicturePreview');
-    preview.src = user.profilePictureBase64
-        ? `data:${user.profilePictureType};base64,${user.profilePictureBase64}`
+    preview.src = user.profilePictureUrl
+        ? user.profilePictureUrl
         : DEFAULT_AVATAR;
     
     const modal = new bootstrap.Modal(document.getElementById('profileModal'));
@@ -922,7 +991,7 @@ function searchUsers(query) {
         }
     })
     .then(handleJsonResponse)
-    .then(data => renderUserList(data))
+    .then(data => renderUserList(data.users))
     .catch(error => console.error('Error searching users:', error));
 }
 
@@ -1122,8 +1191,8 @@ function handleJsonResponse(response) {
 
 function setAvatarElement(element, entity) {
     if (!element) return;
-    if (entity && entity.profilePictureBase64) {
-        element.style.backgroundImage = `url('data:${entity.profilePictureType};base64,${entity.profilePictureBase64}')`;
+    if (entity && entity.profilePictureUrl) {
+        element.style.backgroundImage = `url('${entity.profilePictureUrl}')`;
         element.classList.remove('default-avatar');
         element.textContent = '';
     } else {
@@ -1134,8 +1203,8 @@ function setAvatarElement(element, entity) {
 }
 
 function getAvatarMarkup(entity, text) {
-    if (entity && entity.profilePictureBase64) {
-        return `<div class="user-avatar me-3 lazy-load" style="background-image:url('data:${entity.profilePictureType};base64,${entity.profilePictureBase64}')" onload="this.classList.add('loaded')"></div>`;
+    if (entity && entity.profilePictureUrl) {
+        return `<div class="user-avatar me-3 lazy-load" style="background-image:url('${entity.profilePictureUrl}')" onload="this.classList.add('loaded')"></div>`;
     }
     const initial = (text || '?').charAt(0).toUpperCase();
     return `<div class="user-avatar me-3 default-avatar"><span>${initial}</span></div>`;
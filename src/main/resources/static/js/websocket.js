@@ -3,25 +3,48 @@ let stompClient = null;
 let connected = false;
 let groupSubscriptions = {};
 let pendingGroupIds = [];
+// Native WebSocket first; switch to SockJS for good once it fails to connect
+let useNativeTransport = 'WebSocket' in window;
+
+function openSocket() {
+    if (useNativeTransport) {
+        const scheme = window.location.protocol === 'https:' ? 'wss://' : 'ws://';
+        return new WebSocket(scheme + window.location.host + '/ws-native');
+    }
+    return new SockJS('/ws');
+}
 
 function connectWebSocket() {
-    const socket = new SockJS('/ws');
+    const socket = openSocket();
     stompClient = Stomp.over(socket);
+    let everConnected = false;
     
-    stompClient.connect({}, function(frame) {
+    stompClient.connect({ 'Authorization': 'Bearer ' + getAuthToken() }, function(frame) {
         connected = true;
+        everConnected = true;
         console.log('Connected: ' + frame);
         
         const user = getCurrentUser();
         if (user) {
-            // Subscribe to personal message queue
-            stompClient.subscribe('/user/' + user.id + '/queue/messages', function(message) {
+            // Personal queues; the server resolves /user/queue/... to this session
+            stompClient.subscribe('/user/queue/messages', function(message) {
                 const messageData = JSON.parse(message.body);
                 handleIncomingMessage(messageData);
             });
             
+            stompClient.subscribe('/user/queue/presence', function(presence) {
+                if (typeof onPresenceReceived === 'function') {
+                    onPresenceReceived(JSON.parse(presence.body));
+                }
+            });
+
+            // Batched chat messages, when the server has outbound batching enabled
+            stompClient.subscribe('/user/queue/batch', function(batch) {
+                JSON.parse(batch.body).forEach(dispatchBatchEntry);
+            });
+
             // Subscribe to typing indicator
-            stompClient.subscribe('/user/' + user.id + '/queue/typing', function(typing) {
+            stompClient.subscribe('/user/queue/typing', function(typing) {
                 const typingData = JSON.parse(typing.body);
                 handleTypingIndicator(typingData);
             });
@@ -33,6 +56,11 @@ function connectWebSocket() {
     }, function(error) {
         console.log('WebSocket connection error: ' + error);
         connected = false;
+        if (useNativeTransport && !everConnected) {
+            useNativeTransport = false;
+            connectWebSocket();
+            return;
+        }
         setTimeout(connectWebSocket, 5000); // Retry after 5 seconds
     });
 }
@@ -82,6 +110,17 @@ function handleIncomingMessage(message) {
     }
 }
 
+function dispatchBatchEntry(entry) {
+    if (entry.destination.startsWith('/user/queue/messages')) {
+        handleIncomingMessage(entry.body);
+    } else if (entry.destination.startsWith('/topic/group/')) {
+        const groupId = Number(entry.destination.substring('/topic/group/'.length));
+        if (typeof onGroupMessageReceived === 'function') {
+            onGroupMessageReceived(groupId, entry.body);
+        }
+    }
+}
+
 function handleTypingIndicator(typingData) {
     if (typeof onTypingReceived === 'function') {
         onTypingReceived(typingData);
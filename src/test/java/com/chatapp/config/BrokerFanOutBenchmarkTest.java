@@ -0,0 +1,67 @@
+package com.chatapp.config;
+
+import com.chatapp.support.BrokerHarness;
+import com.chatapp.support.StompBrokerStub;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Fan-out throughput of the two broker modes: one group topic with SUBSCRIBERS sessions and MESSAGES
+// published to it. The relay numbers include the loopback round trip through StompBrokerStub (one TCP
+// connection per session plus the system connection), so they bound the relay's own overhead from
+// above rather than predicting a real broker.
+class BrokerFanOutBenchmarkTest {
+    private static final int SUBSCRIBERS = 50;
+    private static final int WARMUP_MESSAGES = 200;
+    private static final int MESSAGES = 1_000;
+    private static final byte[] BODY = ("{\"id\":1234567890123,\"groupId\":7,\"senderId\":42,\"senderName\":\"Ada\","
+            + "\"content\":\"Are the numbers for Tuesday final?\",\"type\":\"TEXT\"}").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void simpleBrokerFanOut() {
+        try (BrokerHarness harness = BrokerHarness.simple()) {
+            report("simple", run(harness));
+        }
+    }
+
+    @Test
+    void relayFanOut() throws Exception {
+        try (StompBrokerStub stub = new StompBrokerStub(); BrokerHarness harness = BrokerHarness.relay(stub)) {
+            report("relay", run(harness));
+        }
+    }
+
+    private static double run(BrokerHarness harness) {
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            harness.connect("s" + i);
+            harness.subscribe("s" + i, "sub-0", "/topic/group/7");
+        }
+        harness.awaitSubscriptions(SUBSCRIBERS);
+
+        publish(harness, WARMUP_MESSAGES);
+        assertThat(harness.awaitDelivered((long) WARMUP_MESSAGES * SUBSCRIBERS, Duration.ofSeconds(30))).isTrue();
+
+        long before = harness.getDelivered();
+        long start = System.nanoTime();
+        publish(harness, MESSAGES);
+        long expected = before + (long) MESSAGES * SUBSCRIBERS;
+        assertThat(harness.awaitDelivered(expected, Duration.ofSeconds(60))).isTrue();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertThat(harness.getDelivered()).isEqualTo(expected);
+        return (expected - before) / seconds;
+    }
+
+    private static void publish(BrokerHarness harness, int count) {
+        for (int i = 0; i < count; i++) {
+            harness.publish("/topic/group/7", BODY);
+        }
+    }
+
+    private static void report(String mode, double deliveriesPerSecond) {
+        System.out.printf("INFO: %s broker fan-out to %d sessions: %.0f deliveries/s%n",
+                mode, SUBSCRIBERS, deliveriesPerSecond);
+    }
+}
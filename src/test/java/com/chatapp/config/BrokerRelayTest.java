@@ -0,0 +1,76 @@
+package com.chatapp.config;
+
+import com.chatapp.support.BrokerHarness;
+import com.chatapp.support.StompBrokerStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Relay broker mode against StompBrokerStub: application messages leave through the relay's system
+// session and come back to the right client sessions through their own broker connections.
+class BrokerRelayTest {
+
+    private StompBrokerStub stub;
+    private BrokerHarness harness;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StompBrokerStub();
+        harness = BrokerHarness.relay(stub);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        harness.close();
+        stub.close();
+    }
+
+    @Test
+    void groupTopicReachesEverySubscribedSession() {
+        harness.connect("s1");
+        harness.connect("s2");
+        harness.connect("s3");
+        harness.subscribe("s1", "sub-0", "/topic/group/7");
+        harness.subscribe("s2", "sub-0", "/topic/group/7");
+        harness.subscribe("s3", "sub-0", "/topic/group/8");
+        harness.awaitSubscriptions(3);
+
+        byte[] json = "{\"id\":1,\"content\":\"hello\"}".getBytes(StandardCharsets.UTF_8);
+        harness.publish("/topic/group/7", json);
+
+        assertThat(harness.awaitDelivered(2, Duration.ofSeconds(10))).isTrue();
+        List<Message<?>> received = List.copyOf(harness.getReceived());
+        assertThat(received).extracting(m -> SimpMessageHeaderAccessor.getSessionId(m.getHeaders()))
+                .containsExactlyInAnyOrder("s1", "s2");
+        for (Message<?> message : received) {
+            assertThat((byte[]) message.getPayload()).isEqualTo(json);
+            assertThat(SimpMessageHeaderAccessor.wrap(message).getContentType()).hasToString("application/json");
+            assertThat(SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders())).isEqualTo("sub-0");
+        }
+    }
+
+    @Test
+    void resolvedUserQueueReachesOnlyItsSession() {
+        harness.connect("s1");
+        harness.connect("s2");
+        // UserDestinationMessageHandler turns /user/{id}/queue/messages into one queue per session
+        harness.subscribe("s1", "sub-1", "/queue/messages-users1");
+        harness.subscribe("s2", "sub-1", "/queue/messages-users2");
+        harness.awaitSubscriptions(2);
+
+        harness.publish("/queue/messages-users2", "{\"id\":2}".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(harness.awaitDelivered(1, Duration.ofSeconds(10))).isTrue();
+        assertThat(harness.getReceived()).singleElement()
+                .extracting(m -> SimpMessageHeaderAccessor.getSessionId(m.getHeaders()))
+                .isEqualTo("s2");
+    }
+}
@@ -0,0 +1,94 @@
+package com.chatapp.service;
+
+import com.chatapp.dto.MessageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Bytes allocated per delivery when one chat message goes to many users: converting the payload once
+// per recipient (the old convertAndSendToUser loop) against serializing it once (FanOutEncoder).
+// The broker side is a channel that only counts, so the numbers cover conversion and message building.
+class FanOutAllocationTest {
+    private static final int RECIPIENTS = 100;
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 2_000;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private SimpMessagingTemplate template;
+    private LocalMessageBus bus;
+    private List<Long> recipients;
+    private MessageDTO payload;
+    private long delivered;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        MessageChannel brokerChannel = (Message<?> message, long timeout) -> {
+            delivered++;
+            return true;
+        };
+        template = new SimpMessagingTemplate(brokerChannel);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        template.setMessageConverter(converter);
+
+        FanOutEncoder encoder = new FanOutEncoder();
+        ReflectionTestUtils.setField(encoder, "messagingTemplate", template);
+        ReflectionTestUtils.setField(encoder, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(encoder, "meterRegistry", new SimpleMeterRegistry());
+        encoder.init();
+        bus = new LocalMessageBus();
+        ReflectionTestUtils.setField(bus, "fanOutEncoder", encoder);
+
+        recipients = new ArrayList<>();
+        for (long id = 1; id <= RECIPIENTS; id++) {
+            recipients.add(id);
+        }
+        payload = new MessageDTO(1234567890123L, 42L, "Ada Lovelace", "ada", 7L, "Charles Babbage",
+                "Are the numbers for Tuesday's meeting final, or should I wait for the revised table?",
+                "TEXT", null, null, null, null, false, LocalDateTime.of(2026, 1, 15, 9, 30));
+    }
+
+    @Test
+    void serializingOncePerFanOutAllocatesLessPerDelivery() {
+        double perRecipient = bytesPerDelivery(() -> {
+            for (Long userId : recipients) {
+                template.convertAndSendToUser(userId.toString(), "/queue/messages", payload);
+            }
+        });
+        double once = bytesPerDelivery(() -> bus.sendToUsers(recipients, "/queue/messages", payload));
+
+        System.out.printf("INFO: Fan-out to %d users: %.0f bytes/delivery converting per recipient, "
+                + "%.0f bytes/delivery serializing once%n", RECIPIENTS, perRecipient, once);
+        assertThat(once).isLessThan(perRecipient);
+    }
+
+    private double bytesPerDelivery(Runnable fanOut) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            fanOut.run();
+        }
+        long deliveredBefore = delivered;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            fanOut.run();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return (double) allocated / (delivered - deliveredBefore);
+    }
+}
@@ -0,0 +1,187 @@
+package com.chatapp.service;
+
+import com.chatapp.security.AuthenticatedUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two nodes sharing one users table, with the cluster bus reduced to what TcpMessageBus does for presence:
+// each node's local transitions become setRemote calls on the other. Flushes are run by hand.
+class PresenceClusterTest {
+    private static final long USER = 1L;
+    private static final long FRIEND = 2L;
+
+    // users.online, as the shared database holds it
+    private final Map<Long, Boolean> online = new ConcurrentHashMap<>();
+    // presence pushes seen by the friend, in order
+    private final List<Boolean> pushes = new ArrayList<>();
+
+    private Node a;
+    private Node b;
+
+    private class Node {
+        final int id;
+        final UserLocationRegistry registry = new UserLocationRegistry();
+        final PresenceService presence = new PresenceService();
+
+        Node(int id) {
+            this.id = id;
+            ReflectionTestUtils.setField(registry, "meterRegistry", new SimpleMeterRegistry());
+            registry.registerMetrics();
+
+            FriendshipGraph friendshipGraph = new FriendshipGraph() {
+                @Override
+                public long[] friendsOf(long userId) {
+                    return userId == USER ? new long[] {FRIEND} : new long[] {USER};
+                }
+            };
+            ReflectionTestUtils.setField(presence, "locationRegistry", registry);
+            ReflectionTestUtils.setField(presence, "friendshipGraph", friendshipGraph);
+            ReflectionTestUtils.setField(presence, "messageBus", new RecordingBus());
+            ReflectionTestUtils.setField(presence, "jdbcTemplate", new UsersTable());
+            ReflectionTestUtils.setField(presence, "meterRegistry", new SimpleMeterRegistry());
+            // Flushed by the test only
+            ReflectionTestUtils.setField(presence, "flushIntervalMs", 3_600_000L);
+            presence.start();
+        }
+
+        void connect(String sessionId, long userId) {
+            registry.onConnected(new SessionConnectedEvent(this, message(sessionId), principal(userId)));
+        }
+
+        void disconnect(String sessionId, long userId) {
+            registry.onDisconnected(new SessionDisconnectEvent(this, message(sessionId), sessionId,
+                    CloseStatus.NORMAL, principal(userId)));
+        }
+
+        void flush() {
+            ReflectionTestUtils.invokeMethod(presence, "flush");
+        }
+    }
+
+    // The conditional UPDATE against the shared table
+    private class UsersTable extends JdbcTemplate {
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            int[] counts = new int[batchArgs.size()];
+            for (int i = 0; i < counts.length; i++) {
+                Object[] row = batchArgs.get(i);
+                boolean value = (Boolean) row[0];
+                Long userId = (Long) row[2];
+                if (online.getOrDefault(userId, false) != value) {
+                    online.put(userId, value);
+                    counts[i] = 1;
+                }
+            }
+            return counts;
+        }
+    }
+
+    private class RecordingBus implements MessageBus {
+        @Override
+        public void sendToUser(Long userId, String destination, Object payload) {
+            sendToUsers(List.of(userId), destination, payload);
+        }
+
+        @Override
+        public synchronized void sendToUsers(Collection<Long> userIds, String destination, Object payload) {
+            if (userIds.contains(FRIEND) && ((Map<?, ?>) payload).get("userId").equals(USER)) {
+                pushes.add((Boolean) ((Map<?, ?>) payload).get("online"));
+            }
+        }
+
+        @Override
+        public void sendToGroup(Long groupId, Object payload) {
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        a = new Node(0);
+        b = new Node(1);
+        link(a, b);
+        link(b, a);
+        // The friend stays connected to node B throughout
+        b.connect("friend", FRIEND);
+        a.flush();
+        b.flush();
+    }
+
+    @AfterEach
+    void tearDown() {
+        a.presence.stop();
+        b.presence.stop();
+    }
+
+    @Test
+    void reconnectingToANodeThatSawTheUserLeaveMarksThemOnlineAgain() {
+        a.connect("a1", USER);
+        b.connect("b1", USER);
+        flushBoth();
+        assertThat(online.get(USER)).isTrue();
+
+        // Still connected on B: nothing changes
+        a.disconnect("a1", USER);
+        flushBoth();
+        assertThat(online.get(USER)).isTrue();
+
+        b.disconnect("b1", USER);
+        flushBoth();
+        assertThat(online.get(USER)).isFalse();
+
+        a.connect("a2", USER);
+        flushBoth();
+        assertThat(online.get(USER)).isTrue();
+        assertThat(pushes).containsExactly(true, false, true);
+    }
+
+    @Test
+    void eachChangeIsPushedOnceWhenBothNodesFlushIt() {
+        a.connect("a1", USER);
+        flushBoth();
+        b.connect("b1", USER);
+        flushBoth();
+        a.disconnect("a1", USER);
+        b.disconnect("b1", USER);
+        flushBoth();
+
+        assertThat(online.get(USER)).isFalse();
+        assertThat(pushes).containsExactly(true, false);
+    }
+
+    private void flushBoth() {
+        a.flush();
+        b.flush();
+    }
+
+    private static void link(Node from, Node to) {
+        from.registry.addListener((userId, isOnline) -> to.registry.setRemote(from.id, userId, isOnline));
+    }
+
+    private static Message<byte[]> message(String sessionId) {
+        return MessageBuilder.withPayload(new byte[0]).setHeader("simpSessionId", sessionId).build();
+    }
+
+    private static Authentication principal(long userId) {
+        AuthenticatedUser user = new AuthenticatedUser(userId, "user" + userId);
+        return new UsernamePasswordAuthenticationToken(user, null, List.of());
+    }
+}
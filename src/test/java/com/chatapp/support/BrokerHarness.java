@@ -0,0 +1,156 @@
+package com.chatapp.support;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+// The broker half of the STOMP pipeline as WebSocketConfig.configureMessageBroker sets it up for either
+// broker mode: client inbound, client outbound and broker channels around a SimpleBrokerMessageHandler
+// or a StompBrokerRelayMessageHandler on "/topic" and "/queue". Tests play the part of client sessions
+// and of the application (publishing on the broker channel) and see what the broker hands back.
+public class BrokerHarness implements AutoCloseable {
+    private static final List<String> DESTINATIONS = List.of("/topic", "/queue");
+
+    private final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+    private final StompBrokerStub stub;
+    private AbstractBrokerMessageHandler broker;
+
+    private final Map<String, Boolean> connected = new ConcurrentHashMap<>();
+    private final AtomicLong delivered = new AtomicLong();
+    private final Queue<Message<?>> received = new ConcurrentLinkedQueue<>();
+
+    private BrokerHarness(StompBrokerStub stub) {
+        this.stub = stub;
+        clientOutbound.subscribe(this::onOutbound);
+    }
+
+    public static BrokerHarness simple() {
+        BrokerHarness harness = new BrokerHarness(null);
+        return harness.start(new SimpleBrokerMessageHandler(harness.clientInbound, harness.clientOutbound,
+                harness.brokerChannel, DESTINATIONS));
+    }
+
+    public static BrokerHarness relay(StompBrokerStub stub) {
+        BrokerHarness harness = new BrokerHarness(stub);
+        StompBrokerRelayMessageHandler relay = new StompBrokerRelayMessageHandler(harness.clientInbound,
+                harness.clientOutbound, harness.brokerChannel, DESTINATIONS);
+        relay.setRelayHost("127.0.0.1");
+        relay.setRelayPort(stub.getPort());
+        return harness.start(relay);
+    }
+
+    private BrokerHarness start(AbstractBrokerMessageHandler handler) {
+        broker = handler;
+        handler.start();
+        // The relay's system session must be up before application messages are accepted
+        await(handler::isBrokerAvailable, Duration.ofSeconds(10), "broker available");
+        return this;
+    }
+
+    // MESSAGE frames the broker handed to client sessions
+    public Queue<Message<?>> getReceived() {
+        return received;
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public void connect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setAcceptVersion("1.2");
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(new ConcurrentHashMap<>());
+        accessor.setLeaveMutable(true);
+        clientInbound.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        await(() -> connected.containsKey(sessionId), Duration.ofSeconds(10), "session " + sessionId + " connected");
+    }
+
+    public void subscribe(String sessionId, String subscriptionId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setLeaveMutable(true);
+        clientInbound.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    // The relay forwards subscriptions asynchronously; wait until the broker has registered them
+    public void awaitSubscriptions(int count) {
+        if (stub != null) {
+            await(() -> stub.getSubscriptionCount() >= count, Duration.ofSeconds(10), count + " subscriptions");
+        }
+    }
+
+    // What MessageBus does: a pre-serialized JSON body sent to the broker channel without a session
+    public void publish(String destination, byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        brokerChannel.send(MessageBuilder.createMessage(json, accessor.getMessageHeaders()));
+    }
+
+    public boolean awaitDelivered(long count, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (delivered.get() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    private void onOutbound(Message<?> message) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        SimpMessageType type = accessor.getMessageType();
+        StompCommand command = (StompCommand) message.getHeaders().get("stompCommand");
+        if (type == SimpMessageType.CONNECT_ACK || command == StompCommand.CONNECTED) {
+            connected.put(accessor.getSessionId(), Boolean.TRUE);
+        } else if (type == SimpMessageType.MESSAGE) {
+            received.add(message);
+            delivered.incrementAndGet();
+        }
+    }
+
+    private static void await(BooleanSupplier condition, Duration timeout, String what) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Timed out waiting for " + what);
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.chatapp.support;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stand-in for the external STOMP broker (RabbitMQ, ActiveMQ) used in relay mode. Speaks just enough
+// STOMP 1.2 over TCP for StompBrokerRelayMessageHandler: CONNECT/STOMP, SUBSCRIBE, UNSUBSCRIBE, SEND and
+// DISCONNECT, without heart-beats. Every SEND is delivered to every subscription with the same
+// destination, queues included, which is all the relay needs since /user queues are per session.
+public class StompBrokerStub implements AutoCloseable {
+
+    private record Subscription(Connection connection, String id, String destination) {
+    }
+
+    private final ServerSocket serverSocket;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicLong sends = new AtomicLong();
+    private volatile boolean running = true;
+
+    public StompBrokerStub() throws IOException {
+        serverSocket = new ServerSocket(0, 200, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "stomp-stub-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    public long getSendCount() {
+        return sends.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                Thread reader = new Thread(connection::readLoop, "stomp-stub-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void onFrame(Connection connection, String command, Map<String, String> headers, byte[] body)
+            throws IOException {
+        switch (command) {
+            case "CONNECT", "STOMP" -> connection.write("CONNECTED", Map.of("version", "1.2", "heart-beat", "0,0"), null);
+            case "SUBSCRIBE" -> subscriptions.add(new Subscription(connection, headers.get("id"), headers.get("destination")));
+            case "UNSUBSCRIBE" -> subscriptions.removeIf(s -> s.connection() == connection && s.id().equals(headers.get("id")));
+            case "SEND" -> {
+                sends.incrementAndGet();
+                String destination = headers.get("destination");
+                for (Subscription subscription : subscriptions) {
+                    if (subscription.destination().equals(destination)) {
+                        Map<String, String> out = new LinkedHashMap<>();
+                        out.put("destination", destination);
+                        out.put("subscription", subscription.id());
+                        out.put("message-id", Long.toString(messageIds.incrementAndGet()));
+                        if (headers.containsKey("content-type")) {
+                            out.put("content-type", headers.get("content-type"));
+                        }
+                        subscription.connection().write("MESSAGE", out, body);
+                    }
+                }
+            }
+            case "DISCONNECT" -> {
+                if (headers.containsKey("receipt")) {
+                    connection.write("RECEIPT", Map.of("receipt-id", headers.get("receipt")), null);
+                }
+                connection.close();
+            }
+            default -> connection.write("ERROR", Map.of("message", "Unsupported command " + command), null);
+        }
+    }
+
+    private class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        void readLoop() {
+            try (InputStream in = new BufferedInputStream(socket.getInputStream())) {
+                while (running) {
+                    String command = readLine(in);
+                    if (command.isEmpty()) {
+                        // heart-beat
+                        continue;
+                    }
+                    Map<String, String> headers = new LinkedHashMap<>();
+                    for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                        int colon = line.indexOf(':');
+                        // The first occurrence of a repeated header wins
+                        headers.putIfAbsent(unescape(line.substring(0, colon)), unescape(line.substring(colon + 1)));
+                    }
+                    onFrame(this, command, headers, readBody(in, headers.get("content-length")));
+                }
+            } catch (IOException e) {
+                // connection closed
+            } finally {
+                close();
+            }
+        }
+
+        synchronized void write(String command, Map<String, String> headers, byte[] body) throws IOException {
+            StringBuilder frame = new StringBuilder(command).append('\n');
+            headers.forEach((name, value) -> frame.append(escape(name)).append(':').append(escape(value)).append('\n'));
+            if (body != null) {
+                frame.append("content-length:").append(body.length).append('\n');
+            }
+            frame.append('\n');
+            out.write(frame.toString().getBytes(StandardCharsets.UTF_8));
+            if (body != null) {
+                out.write(body);
+            }
+            out.write(0);
+            out.flush();
+        }
+
+        void close() {
+            connections.remove(this);
+            subscriptions.removeIf(s -> s.connection() == this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new EOFException();
+            }
+            line.write(b);
+        }
+        String text = line.toString(StandardCharsets.UTF_8);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    private static byte[] readBody(InputStream in, String contentLength) throws IOException {
+        if (contentLength != null) {
+            byte[] body = in.readNBytes(Integer.parseInt(contentLength));
+            if (in.read() != 0) {
+                throw new IOException("Frame not terminated by NUL");
+            }
+            return body;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int b = in.read(); b != 0; b = in.read()) {
+            if (b < 0) {
+                throw new EOFException();
+            }
+            body.write(b);
+        }
+        return body.toByteArray();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\r", "\\r").replace("\n", "\\n").replace(":", "\\c");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                result.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            result.append(switch (next) {
+                case 'c' -> ':';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                default -> next;
+            });
+        }
+        return result.toString();
+    }
+}